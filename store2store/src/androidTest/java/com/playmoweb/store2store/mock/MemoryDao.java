@@ -3,12 +3,16 @@ package com.playmoweb.store2store.mock;
 import com.playmoweb.store2store.store.Optional;
 import com.playmoweb.store2store.store.StoreDao;
 import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterPredicate;
 import com.playmoweb.store2store.utils.SortType;
 import com.playmoweb.store2store.utils.SortingMode;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import io.reactivex.Flowable;
 
@@ -26,18 +30,26 @@ public class MemoryDao extends StoreDao<TestModel> {
 
     @Override
     public Flowable<Optional<List<TestModel>>> getAll(Filter filter, SortingMode sortingMode) {
-        List<TestModel> copy = new ArrayList<>(models);
+        List<TestModel> copy = FilterPredicate.compile(TestModel.class, filter).filter(models);
         return Flowable.just(Optional.wrap(copy));
     }
 
     @Override
     public Flowable<Optional<List<TestModel>>> getAll(final List<TestModel> items) {
-        List<TestModel> output = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>();
         for(TestModel toFind : items){
-            for(TestModel tm : models){
-                if(tm.getId() == toFind.getId()){
-                    output.add(tm);
-                }
+            ids.add(toFind.getId());
+        }
+        return getByIds(ids);
+    }
+
+    @Override
+    public <S> Flowable<Optional<List<TestModel>>> getByIds(Collection<S> ids) {
+        Set<Object> toFind = new HashSet<Object>(ids);
+        List<TestModel> output = new ArrayList<>();
+        for(TestModel tm : models){
+            if(toFind.contains(tm.getId())){
+                output.add(tm);
             }
         }
 
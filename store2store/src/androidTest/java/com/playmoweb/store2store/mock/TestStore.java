@@ -4,13 +4,15 @@ import com.playmoweb.store2store.store.Optional;
 import com.playmoweb.store2store.store.StoreDao;
 import com.playmoweb.store2store.store.StoreService;
 import com.playmoweb.store2store.utils.Filter;
-import com.playmoweb.store2store.utils.SortType;
+import com.playmoweb.store2store.utils.FilterPredicate;
 import com.playmoweb.store2store.utils.SortingMode;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Flowable;
@@ -44,18 +46,10 @@ public class TestStore extends StoreService<TestModel> {
             list.add(new TestModel(10));
             list.add(new TestModel(20));
             list.add(new TestModel(30));
+            list = FilterPredicate.compile(TestModel.class, filter).filter(list);
 
             if(sortingMode != null){
-                boolean reverse = false;
-                for(AbstractMap.SimpleEntry<String, SortType> e : sortingMode.entries){
-                    if(e.getValue() == SortType.DESCENDING){
-                        reverse = true;
-                        break;
-                    }
-                }
-                if(reverse) {
-                    Collections.reverse(list);
-                }
+                Collections.sort(list, sortingMode.comparator(TestModel.class));
             }
 
             return Flowable.just(Optional.wrap(list)).delay(1, TimeUnit.SECONDS);
@@ -63,15 +57,23 @@ public class TestStore extends StoreService<TestModel> {
 
         @Override
         public Flowable<Optional<List<TestModel>>> getAll(final List<TestModel> items) {
+            Set<Integer> ids = new HashSet<>();
+            for(TestModel toFind : items){
+                ids.add(toFind.getId());
+            }
+            return getByIds(ids);
+        }
+
+        @Override
+        public <S> Flowable<Optional<List<TestModel>>> getByIds(final Collection<S> ids) {
+            final Set<Object> toFind = new HashSet<Object>(ids);
             return getAll(null, null).map(new Function<Optional<List<TestModel>>, Optional<List<TestModel>>>() {
                 @Override
                 public Optional<List<TestModel>> apply(Optional<List<TestModel>> fullList) throws Exception {
                     List<TestModel> output = new ArrayList<>();
-                    for(TestModel toFind : items){
-                        for(TestModel tm : fullList.get()){
-                            if(tm.getId() == toFind.getId()){
-                                output.add(tm);
-                            }
+                    for(TestModel tm : fullList.get()){
+                        if(toFind.contains(tm.getId())){
+                            output.add(tm);
                         }
                     }
                     return Optional.wrap(output);
@@ -90,10 +92,10 @@ public class TestStore extends StoreService<TestModel> {
                 return Flowable.error(new Exception("getOne.error"));
             }
 
-            return getAll(filter, sortingMode).flatMap(new Function<Optional<List<TestModel>>, Flowable<Optional<TestModel>>>() {
+            return getAll(filter, sortingMode, 1).flatMap(new Function<Optional<List<TestModel>>, Flowable<Optional<TestModel>>>() {
                 @Override
                 public Flowable<Optional<TestModel>> apply(Optional<List<TestModel>> testModels) throws Exception {
-                    return Flowable.just(Optional.wrap(testModels.get().get(0)));
+                    return Flowable.just(Optional.wrap(testModels.get().isEmpty() ? null : testModels.get().get(0)));
                 }
             });
         }
@@ -0,0 +1,94 @@
+package com.playmoweb.store2store.store;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test the size bounded cache dao
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheStoreDaoUnitTest {
+    private static final KeyExtractor<TestModel, Integer> KEYS = new KeyExtractor<TestModel, Integer>() {
+        @Override
+        public Integer getKey(TestModel item) {
+            return item.getId();
+        }
+    };
+
+    @Test
+    public void testSizeIsBounded() {
+        CacheStoreDao<TestModel, Integer> dao = new CacheStoreDao<>(TestModel.class, KEYS, 100);
+        for (int i = 0; i < 1000; i++) {
+            dao.insertOrUpdate(new TestModel(i)).blockingFirst();
+        }
+
+        Assert.assertEquals(100, dao.size());
+        Assert.assertEquals(100, dao.weight());
+        Assert.assertEquals(900, dao.getStats().evictionCount);
+    }
+
+    @Test
+    public void testHotItemsSurviveScan() {
+        CacheStoreDao<TestModel, Integer> dao = new CacheStoreDao<>(TestModel.class, KEYS, 100);
+        for (int i = 0; i < 50; i++) {
+            dao.insertOrUpdate(new TestModel(i)).blockingFirst();
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                dao.getById(i).blockingFirst();
+            }
+        }
+
+        // one-off scan written back by a remote read
+        List<TestModel> scan = new ArrayList<>();
+        for (int i = 1000; i < 2000; i++) {
+            scan.add(new TestModel(i));
+        }
+        dao.insertOrUpdate(scan).blockingFirst();
+
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (!dao.getById(i).blockingFirst().isNull()) {
+                hot++;
+            }
+        }
+        Assert.assertTrue("Only " + hot + " hot items survived", hot >= 45);
+        Assert.assertEquals(100, dao.size());
+    }
+
+    @Test
+    public void testStatsAndWeight() {
+        CacheStoreDao<TestModel, Integer> dao = new CacheStoreDao<>(TestModel.class, KEYS, 10, new Weigher<TestModel>() {
+            @Override
+            public int weigh(TestModel item) {
+                return item.getName() == null ? 1 : item.getName().length();
+            }
+        });
+        dao.insertOrUpdate(new TestModel(1, "abcd")).blockingFirst();
+        dao.insertOrUpdate(new TestModel(2, "abcd")).blockingFirst();
+        dao.getById(1).blockingFirst();
+        dao.getById(3).blockingFirst();
+        dao.insertOrUpdate(new TestModel(3, "abcd")).blockingFirst();
+
+        CacheStats stats = dao.getStats();
+        Assert.assertEquals(1, stats.hitCount);
+        Assert.assertEquals(1, stats.missCount);
+        Assert.assertEquals(1, stats.evictionCount);
+        Assert.assertEquals(8, dao.weight());
+
+        dao.delete(new TestModel(1)).blockingFirst();
+        dao.delete(new TestModel(2)).blockingFirst();
+        dao.delete(new TestModel(3)).blockingFirst();
+        Assert.assertEquals(0, dao.weight());
+    }
+}
@@ -0,0 +1,46 @@
+package com.playmoweb.store2store.store;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Test the histogram of the store metrics
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistogramUnitTest {
+
+    @Test
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        Assert.assertEquals(10000, histogram.count());
+        Assert.assertEquals(10000000, histogram.max());
+        Assert.assertEquals(5000500, histogram.mean(), 1);
+        assertWithinPrecision(5000000, histogram.percentile(50));
+        assertWithinPrecision(9900000, histogram.percentile(99));
+        Assert.assertEquals(10000000, histogram.percentile(100));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.percentile(99));
+        for (int i = 0; i < 32; i++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(15, histogram.percentile(50));
+        Assert.assertEquals(31, histogram.percentile(100));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        Assert.assertTrue(actual + " is not " + expected, actual >= expected && actual <= expected + expected / 32);
+    }
+}
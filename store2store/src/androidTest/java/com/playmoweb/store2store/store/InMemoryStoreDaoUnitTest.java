@@ -0,0 +1,240 @@
+package com.playmoweb.store2store.store;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+import com.playmoweb.store2store.utils.Cursor;
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.IndexType;
+import com.playmoweb.store2store.utils.SortType;
+import com.playmoweb.store2store.utils.SortingMode;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.subscribers.TestSubscriber;
+
+/**
+ * Test the in-memory dao
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class InMemoryStoreDaoUnitTest {
+
+    private InMemoryStoreDao<TestModel, Integer> dao;
+
+    @Before
+    public void before() {
+        dao = new InMemoryStoreDao<>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        });
+
+        List<TestModel> list = new ArrayList<>();
+        list.add(new TestModel(30, "c"));
+        list.add(new TestModel(10, "a"));
+        list.add(new TestModel(20, "b"));
+        dao.insertOrUpdate(list).blockingFirst();
+    }
+
+    @Test
+    public void testGetById() {
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        dao.getById(10).subscribe(observer);
+
+        observer.assertComplete();
+        Assert.assertEquals("a", observer.values().get(0).get().getName());
+        Assert.assertTrue(dao.getById(99).blockingFirst().isNull());
+    }
+
+    @Test
+    public void testUpdateKeepsInsertionOrder() {
+        TestModel updated = new TestModel(10, "updated");
+        dao.insertOrUpdate(updated).blockingFirst();
+
+        List<TestModel> all = dao.getAll(null, null).blockingFirst().get();
+        Assert.assertEquals(3, all.size());
+        Assert.assertEquals(30, all.get(0).getId());
+        Assert.assertEquals("updated", all.get(1).getName());
+        Assert.assertEquals(20, all.get(2).getId());
+    }
+
+    @Test
+    public void testGetAllItems() {
+        List<TestModel> found = dao.getAll(Arrays.asList(new TestModel(20), new TestModel(99), new TestModel(30)))
+                .blockingFirst().get();
+
+        Assert.assertEquals(2, found.size());
+        Assert.assertEquals("b", found.get(0).getName());
+        Assert.assertEquals("c", found.get(1).getName());
+    }
+
+    @Test
+    public void testGetByIds() {
+        List<TestModel> found = dao.getByIds(Arrays.asList(20, 99, 30, 20)).blockingFirst().get();
+
+        Assert.assertEquals(2, found.size()); // unknown and repeated ids are skipped
+        Assert.assertEquals(20, found.get(0).getId());
+        Assert.assertEquals(30, found.get(1).getId());
+    }
+
+    @Test
+    public void testKeysetPages() {
+        dao.addIndex("id", IndexType.SORTED);
+        SortingMode byId = new SortingMode("id", SortType.DESCENDING);
+
+        Page<TestModel> page = dao.getPage(null, byId, null, 2).blockingFirst();
+        Assert.assertEquals(2, page.items.size());
+        Assert.assertEquals(30, page.items.get(0).getId());
+        Assert.assertTrue(page.hasNext());
+
+        dao.insertOrUpdate(new TestModel(25, "d")).blockingFirst(); // before the cursor, not seen by the next page
+        page = dao.getPage(null, byId, page.next, 2).blockingFirst();
+        Assert.assertEquals(1, page.items.size());
+        Assert.assertEquals(10, page.items.get(0).getId());
+        Assert.assertFalse(page.hasNext());
+
+        // many sorting keys : the rows before the cursor are skipped
+        SortingMode byNameThenId = new SortingMode("name", SortType.ASCENDING).and("id", SortType.ASCENDING);
+        page = dao.getPage(null, byNameThenId, Cursor.after("b", 20), 10).blockingFirst();
+        Assert.assertEquals(2, page.items.size());
+        Assert.assertEquals("c", page.items.get(0).getName());
+        Assert.assertEquals("d", page.items.get(1).getName());
+    }
+
+    @Test
+    public void testWriteReturnsPrevious() {
+        List<TestModel> previous = dao.insertOrUpdateReturningPrevious(Arrays.asList(
+                new TestModel(10, "x"), new TestModel(40, "d"), new TestModel(10, "y"))).blockingFirst().get();
+
+        Assert.assertEquals(1, previous.size()); // 40 is new, 10 written twice is replaced once
+        Assert.assertEquals("a", previous.get(0).getName());
+        Assert.assertEquals("y", dao.getById(10).blockingFirst().get().getName());
+
+        Assert.assertEquals("b", dao.insertOrUpdateReturningPrevious(new TestModel(20, "z")).blockingFirst().get().getName());
+        Assert.assertTrue(dao.insertOrUpdateReturningPrevious(new TestModel(50)).blockingFirst().isNull());
+    }
+
+    @Test
+    public void testDelete() {
+        Assert.assertEquals(1, (int) dao.delete(new TestModel(10)).blockingFirst());
+        Assert.assertEquals(0, (int) dao.delete(new TestModel(10)).blockingFirst());
+        Assert.assertEquals(1, (int) dao.delete(Arrays.asList(new TestModel(20), new TestModel(99))).blockingFirst());
+        Assert.assertEquals(1, dao.size());
+        Assert.assertEquals(1, (int) dao.deleteAll().blockingFirst());
+        Assert.assertEquals(0, dao.size());
+    }
+
+    @Test
+    public void testRangeWithSortedIndex() {
+        dao.addIndex("id", IndexType.SORTED);
+        dao.insertOrUpdate(new TestModel(5, "z")).blockingFirst();
+
+        List<TestModel> found = dao.getAll(new Filter("id", FilterType.GREATER_THAN_OR_EQUAL, 10L), SortingMode.DEFAULT)
+                .blockingFirst().get();
+        Assert.assertEquals(3, found.size());
+        Assert.assertEquals(10, found.get(0).getId());
+        Assert.assertEquals(30, found.get(2).getId());
+
+        found = dao.getAll(new Filter("id", FilterType.LESS_THAN, 30), new SortingMode("id", SortType.DESCENDING))
+                .blockingFirst().get();
+        Assert.assertEquals(3, found.size());
+        Assert.assertEquals(20, found.get(0).getId());
+        Assert.assertEquals(5, found.get(2).getId());
+    }
+
+    @Test
+    public void testNotEqualWithSortedIndex() {
+        dao.addIndex("id", IndexType.SORTED);
+        dao.insertOrUpdate(Arrays.asList(new TestModel(5, "z"), new TestModel(20, "y"), new TestModel(40, "x"))).blockingFirst();
+
+        List<TestModel> found = dao.getAll(new Filter("id", FilterType.NOT_EQUAL, 20), new SortingMode("id", SortType.ASCENDING))
+                .blockingFirst().get();
+        Assert.assertEquals(4, found.size());
+        Assert.assertEquals(5, found.get(0).getId());
+        Assert.assertEquals(40, found.get(3).getId());
+
+        // walked lazily from both sides of the excluded value
+        found = dao.getAll(new Filter("id", FilterType.NOT_EQUAL, 20), new SortingMode("id", SortType.DESCENDING), 3)
+                .blockingFirst().get();
+        Assert.assertEquals(3, found.size());
+        Assert.assertEquals(40, found.get(0).getId());
+        Assert.assertEquals(30, found.get(1).getId());
+        Assert.assertEquals(10, found.get(2).getId());
+    }
+
+    @Test
+    public void testHashIndexIsMaintained() {
+        dao.addIndex("name", IndexType.HASH);
+        dao.insertOrUpdate(new TestModel(10, "b")).blockingFirst();
+
+        List<TestModel> found = dao.getAll(new Filter("name", "b"), SortingMode.DEFAULT).blockingFirst().get();
+        Assert.assertEquals(2, found.size());
+        Assert.assertEquals(10, found.get(0).getId());
+        Assert.assertEquals(20, found.get(1).getId());
+
+        dao.delete(new TestModel(20)).blockingFirst();
+        Assert.assertEquals(1, dao.getAll(new Filter("name", "b"), null).blockingFirst().get().size());
+        Assert.assertTrue(dao.getAll(new Filter("name", "a"), null).blockingFirst().get().isEmpty());
+    }
+
+    @Test
+    public void testHashIndexMatchesAsTheFilter() {
+        dao.addIndex("id", IndexType.HASH);
+
+        // numbers are compared by value, whatever their boxed type
+        Assert.assertEquals(1, dao.getAll(new Filter("id", 10.0), null).blockingFirst().get().size());
+        Assert.assertEquals(1, dao.getAll(new Filter("id", 10L), null).blockingFirst().get().size());
+        Assert.assertTrue(dao.getAll(new Filter("id", 10.5), null).blockingFirst().get().isEmpty());
+
+        // NOT_EQUAL is scanned : the first page is in insertion order, as without index
+        List<TestModel> found = dao.getAll(new Filter("id", FilterType.NOT_EQUAL, 10), null, 1).blockingFirst().get();
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals(30, found.get(0).getId());
+    }
+
+    @Test
+    public void testFilterAndSortWithoutIndex() {
+        List<TestModel> found = dao.getAll(new Filter("id", FilterType.NOT_EQUAL, 20), new SortingMode("name", SortType.DESCENDING))
+                .blockingFirst().get();
+        Assert.assertEquals(2, found.size());
+        Assert.assertEquals("c", found.get(0).getName());
+        Assert.assertEquals("a", found.get(1).getName());
+    }
+
+    @Test
+    public void testLimitedQueries() {
+        List<TestModel> list = new ArrayList<>();
+        for (int i = 100; i > 40; i--) {
+            list.add(new TestModel(i, i % 2 == 0 ? "even" : "odd"));
+        }
+        dao.insertOrUpdate(list).blockingFirst();
+
+        SortingMode byNameThenId = new SortingMode("name", SortType.ASCENDING).and("id", SortType.ASCENDING);
+        List<TestModel> found = dao.getAll(new Filter("id", FilterType.GREATER_THAN, 30), byNameThenId, 3).blockingFirst().get();
+        Assert.assertEquals(3, found.size());
+        Assert.assertEquals(42, found.get(0).getId());
+        Assert.assertEquals(44, found.get(1).getId());
+        Assert.assertEquals(46, found.get(2).getId());
+
+        Assert.assertEquals(100, dao.getOne(null, new SortingMode("id", SortType.DESCENDING)).blockingFirst().get().getId());
+        Assert.assertEquals(2, dao.getAll(null, null, 2).blockingFirst().get().size());
+        Assert.assertEquals(30, dao.getAll(null, null, 1).blockingFirst().get().get(0).getId()); // insertion order
+    }
+
+    @Test
+    public void testOperationsAreLazy() {
+        dao.deleteAll();
+        Assert.assertEquals(3, dao.size());
+    }
+}
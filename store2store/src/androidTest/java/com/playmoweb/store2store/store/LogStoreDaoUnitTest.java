@@ -0,0 +1,214 @@
+package com.playmoweb.store2store.store;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.SortType;
+import com.playmoweb.store2store.utils.SortingMode;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.reactivex.schedulers.TestScheduler;
+
+/**
+ * Test the memory-mapped log dao
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class LogStoreDaoUnitTest {
+    private static final KeyExtractor<TestModel, Integer> BY_ID = new KeyExtractor<TestModel, Integer>() {
+        @Override
+        public Integer getKey(TestModel item) {
+            return item.getId();
+        }
+    };
+
+    private final TestScheduler compactions = new TestScheduler();
+    private File directory;
+    private LogStoreDao<TestModel, Integer> dao;
+
+    @Before
+    public void before() throws IOException {
+        directory = File.createTempFile("log", "");
+        Assert.assertTrue(directory.delete());
+        dao = open(1024);
+    }
+
+    @Test
+    public void testWritesSurviveARestart() throws IOException {
+        dao.insertOrUpdate(Arrays.asList(new TestModel(1, "a"), new TestModel(2, "b"), new TestModel(3, "c"))).blockingFirst();
+        dao.insertOrUpdate(new TestModel(2, "updated")).blockingFirst();
+        Assert.assertEquals(1, (int) dao.delete(new TestModel(3)).blockingFirst());
+        dao.close();
+
+        dao = open(1024);
+        Assert.assertEquals(2, dao.size());
+        Assert.assertEquals("updated", dao.getById(2).blockingFirst().get().getName());
+        Assert.assertTrue(dao.getById(3).blockingFirst().isNull());
+
+        Assert.assertEquals(2, (int) dao.deleteAll().blockingFirst());
+        dao.insertOrUpdate(new TestModel(4, "d")).blockingFirst();
+        dao.close();
+
+        dao = open(1024);
+        Assert.assertEquals(1, dao.size());
+        Assert.assertEquals(4, dao.getAll(null, null).blockingFirst().get().get(0).getId());
+    }
+
+    @Test
+    public void testQueries() {
+        dao.insertOrUpdate(Arrays.asList(new TestModel(30, "c"), new TestModel(10, "a"), new TestModel(20, "b"))).blockingFirst();
+
+        List<TestModel> sorted = dao.getAll(null, new SortingMode("id", SortType.ASCENDING)).blockingFirst().get();
+        Assert.assertEquals(10, sorted.get(0).getId());
+        Assert.assertEquals(30, sorted.get(2).getId());
+
+        List<TestModel> first = dao.getAll(new Filter("id", FilterType.GREATER_THAN, 10), new SortingMode("id", SortType.DESCENDING), 1).blockingFirst().get();
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(30, first.get(0).getId());
+
+        Assert.assertEquals(2, dao.getByIds(Arrays.asList(20, 99, 10, 20)).blockingFirst().get().size());
+        Assert.assertEquals("a", dao.getOne(new Filter("name", "a"), null).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            List<TestModel> items = new ArrayList<>();
+            for (int id = 0; id < 10; id++) {
+                items.add(new TestModel(id, "round " + round));
+            }
+            dao.insertOrUpdate(items).blockingFirst();
+        }
+
+        // about 4KB written in segments of 1KB, the overwritten records are reclaimed in background
+        Assert.assertTrue(dao.segmentCount() > 2);
+        compactions.triggerActions();
+        Assert.assertTrue(dao.segmentCount() <= 2);
+
+        dao.compact();
+        Assert.assertEquals(1, dao.segmentCount());
+        dao.close();
+
+        dao = open(1024);
+        Assert.assertEquals(10, dao.size());
+        Assert.assertEquals("round 19", dao.getById(7).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        final TestModel model = new TestModel(1, "a");
+        dao.insertOrUpdate(model).blockingFirst();
+        dao.close();
+
+        // crash in the middle of a write : a size without a valid record
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, "test.0.log"), "rw");
+        segment.seek(8 + 1 + new PojoRecordCodec<>(TestModel.class).encodedSize(model));
+        segment.writeInt(42);
+        segment.writeInt(7);
+        segment.close();
+
+        dao = open(1024);
+        Assert.assertEquals(1, dao.size());
+        dao.insertOrUpdate(new TestModel(2, "b")).blockingFirst();
+        dao.close();
+
+        dao = open(1024);
+        Assert.assertEquals(2, dao.size());
+        Assert.assertEquals("b", dao.getById(2).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testOversizedRecordFailsTheWholeWrite() throws IOException {
+        final StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 1024; i++) {
+            name.append('x');
+        }
+        dao.insertOrUpdate(new TestModel(1, "a")).blockingFirst();
+
+        // checked before anything is appended : the first items are neither indexed nor replayed
+        dao.insertOrUpdate(Arrays.asList(new TestModel(1, "b"), new TestModel(2, "c"), new TestModel(3, name.toString())))
+                .test()
+                .assertError(IllegalArgumentException.class);
+        Assert.assertEquals(1, dao.size());
+        Assert.assertEquals("a", dao.getById(1).blockingFirst().get().getName());
+        dao.close();
+
+        dao = open(1024);
+        Assert.assertEquals(1, dao.size());
+        Assert.assertEquals("a", dao.getById(1).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testFailedWriteIsErased() throws IOException {
+        final PojoRecordCodec<TestModel> pojo = new PojoRecordCodec<>(TestModel.class);
+        final RecordCodec<TestModel> failing = new RecordCodec<TestModel>() {
+            @Override
+            public int encodedSize(TestModel item) {
+                return pojo.encodedSize(item);
+            }
+
+            @Override
+            public void encode(TestModel item, ByteBuffer target) {
+                if ("fail".equals(item.getName())) {
+                    throw new IllegalStateException("encode.error");
+                }
+                pojo.encode(item, target);
+            }
+
+            @Override
+            public TestModel decode(ByteBuffer source) {
+                return pojo.decode(source);
+            }
+        };
+        dao.close();
+        dao = new LogStoreDao<>(TestModel.class, BY_ID, failing, directory, "test", 1024, compactions);
+        dao.insertOrUpdate(new TestModel(1, "a")).blockingFirst();
+
+        // the records appended before the failure are erased, a new segment included
+        final List<TestModel> items = new ArrayList<>();
+        for (int id = 2; id < 40; id++) {
+            items.add(new TestModel(id, "b"));
+        }
+        items.add(new TestModel(40, "fail"));
+        dao.insertOrUpdate(items).test().assertErrorMessage("encode.error");
+        Assert.assertEquals(1, dao.size());
+        Assert.assertEquals(1, dao.segmentCount());
+        dao.close();
+
+        dao = open(1024);
+        Assert.assertEquals(1, dao.size());
+        Assert.assertEquals("a", dao.getById(1).blockingFirst().get().getName());
+    }
+
+    private LogStoreDao<TestModel, Integer> open(int segmentSize) throws IOException {
+        return new LogStoreDao<>(TestModel.class, BY_ID, new PojoRecordCodec<>(TestModel.class), directory, "test", segmentSize, compactions);
+    }
+
+    @After
+    public void after() throws IOException {
+        dao.close();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
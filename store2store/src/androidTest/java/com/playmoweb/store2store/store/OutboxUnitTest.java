@@ -0,0 +1,283 @@
+package com.playmoweb.store2store.store;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.SortingMode;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Test the durable outbox and the local-ack writes
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class OutboxUnitTest {
+    private static final PojoRecordCodec<TestModel> CODEC = new PojoRecordCodec<>(TestModel.class);
+
+    private static final KeyExtractor<TestModel, Integer> BY_ID = new KeyExtractor<TestModel, Integer>() {
+        @Override
+        public Integer getKey(TestModel item) {
+            return item.getId();
+        }
+    };
+
+    private static final List<TestModel> NONE = Collections.emptyList();
+
+    private File directory;
+
+    @Before
+    public void before() throws IOException {
+        directory = File.createTempFile("outbox", "");
+        Assert.assertTrue(directory.delete());
+    }
+
+    @Test
+    public void testRecordsSurviveARestart() throws IOException {
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+        outbox.append(new WriteBatch<>(Arrays.asList(new TestModel(1, "a"), new TestModel(2, "b")), NONE));
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(1, "c")), Collections.singletonList(new TestModel(2))));
+        outbox.close();
+
+        outbox = new Outbox<>(directory, "test", CODEC);
+        Assert.assertEquals(4, outbox.size());
+
+        // collapsed by key, the last write wins
+        Outbox.Pending<TestModel> pending = outbox.next(100, BY_ID);
+        Assert.assertEquals(1, pending.batch.upserts.size());
+        Assert.assertEquals("c", pending.batch.upserts.get(0).getName());
+        Assert.assertEquals(2, pending.batch.deletes.get(0).getId());
+
+        outbox.acknowledge(pending);
+        outbox.close();
+        Assert.assertEquals(0, new File(directory, "test.outbox").length());
+        Assert.assertEquals(0, new Outbox<>(directory, "test", CODEC).size());
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+        outbox.append(new WriteBatch<>(Arrays.asList(new TestModel(1, "a"), new TestModel(2, "b"), new TestModel(3, "c")), NONE));
+        outbox.acknowledge(outbox.next(2, BY_ID));
+        outbox.close();
+
+        outbox = new Outbox<>(directory, "test", CODEC);
+        Assert.assertEquals(1, outbox.size());
+        Assert.assertEquals(3, outbox.next(10, BY_ID).batch.upserts.get(0).getId());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC, 1);
+        outbox.append(new WriteBatch<>(Arrays.asList(new TestModel(1, "a"), new TestModel(2, "b"), new TestModel(3, "c")), NONE));
+        final long length = new File(directory, "test.outbox").length();
+
+        // the delivered records are most of the journal : it is rewritten without them
+        outbox.acknowledge(outbox.next(2, BY_ID));
+        Assert.assertEquals(length / 3, new File(directory, "test.outbox").length());
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(4, "d")), NONE));
+        outbox.close();
+
+        outbox = new Outbox<>(directory, "test", CODEC, 1);
+        Assert.assertEquals(2, outbox.size());
+        WriteBatch<TestModel> batch = outbox.next(10, BY_ID).batch;
+        Assert.assertEquals(3, batch.upserts.get(0).getId());
+        Assert.assertEquals(4, batch.upserts.get(1).getId());
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(1, "a")), NONE));
+        outbox.close();
+
+        RandomAccessFile journal = new RandomAccessFile(new File(directory, "test.outbox"), "rw");
+        journal.seek(journal.length());
+        journal.write(new byte[]{0, 0, 0, 42, 1, 2}); // crash in the middle of an append
+        journal.close();
+
+        outbox = new Outbox<>(directory, "test", CODEC);
+        Assert.assertEquals(1, outbox.size());
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(2, "b")), NONE));
+        Assert.assertEquals(2, outbox.next(10, BY_ID).batch.upserts.size());
+    }
+
+    @Test
+    public void testFailedAppendIsDropped() throws IOException {
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(1, "a")), NONE));
+
+        // bytes left by an append that failed (disk full) and could not be truncated
+        RandomAccessFile journal = new RandomAccessFile(new File(directory, "test.outbox"), "rw");
+        journal.seek(journal.length());
+        journal.write(new byte[]{0, 0, 0, 42, 1, 2});
+        journal.close();
+
+        // the next append follows the last good record : nothing is lost after a restart
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(2, "b")), NONE));
+        outbox.close();
+        outbox = new Outbox<>(directory, "test", CODEC);
+        Assert.assertEquals(2, outbox.size());
+        Assert.assertEquals(2, outbox.next(10, BY_ID).batch.upserts.size());
+    }
+
+    @Test
+    public void testKindsOfWrites() throws IOException {
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(1, "a")), NONE, NONE, NONE));
+        outbox.append(new WriteBatch<>(NONE, Arrays.asList(new TestModel(1, "b"), new TestModel(2, "b")), NONE, NONE));
+        outbox.append(new WriteBatch<>(NONE, NONE, NONE, Collections.singletonList(new TestModel(3))));
+        outbox.append(new WriteBatch<>(Collections.singletonList(new TestModel(3, "c")), NONE, NONE, NONE));
+        outbox.append(new WriteBatch<>(NONE, NONE, NONE, Collections.singletonList(new TestModel(4))));
+        outbox.close();
+
+        outbox = new Outbox<>(directory, "test", CODEC);
+        WriteBatch<TestModel> batch = outbox.next(100, BY_ID).batch;
+        // an insert followed by an update stays an insert
+        Assert.assertEquals(1, batch.inserts.size());
+        Assert.assertEquals("b", batch.inserts.get(0).getName());
+        Assert.assertEquals(1, batch.updates.size());
+        Assert.assertEquals(2, batch.updates.get(0).getId());
+        // a write following a delete becomes an upsert
+        Assert.assertEquals(1, batch.upserts.size());
+        Assert.assertEquals(3, batch.upserts.get(0).getId());
+        Assert.assertEquals(1, batch.deletes.size());
+        Assert.assertEquals(4, batch.deletes.get(0).getId());
+    }
+
+    @Test
+    public void testLocalAck() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(1);
+        final List<WriteBatch<TestModel>> delivered = new ArrayList<>();
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, BY_ID);
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<WriteBatch<TestModel>> applyBatch(WriteBatch<TestModel> batch) {
+                if (failures.getAndDecrement() > 0) {
+                    return Flowable.error(new Throwable("applyBatch.error"));
+                }
+                delivered.add(batch);
+                return Flowable.just(batch);
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {})
+                .withKeyExtractor(BY_ID)
+                .enableOutbox(outbox, 50, MILLISECONDS, 100);
+
+        // acknowledged by the synced store, the dao is not involved
+        Assert.assertEquals(1, remote.insert(new TestModel(1, "a")).toList().blockingGet().size());
+        remote.insertOrUpdate(new TestModel(1, "b")).blockingFirst();
+        remote.delete(new TestModel(1)).blockingFirst();
+        remote.insert(new TestModel(2, "c")).blockingFirst();
+        Assert.assertEquals(1, localDao.size());
+
+        // the first batch fails and is sent again
+        for (int i = 0; i < 100 && outbox.size() > 0; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(0, outbox.size());
+        Assert.assertEquals(1, delivered.size());
+        Assert.assertEquals(1, delivered.get(0).deletes.size());
+        Assert.assertEquals(2, delivered.get(0).inserts.get(0).getId());
+        Assert.assertEquals(1, localDao.size());
+
+        // checked on the synced store first : an update of a missing item fails and is not journaled
+        TestSubscriber<Optional<TestModel>> missing = remote.update(new TestModel(42)).subscribeWith(new TestSubscriber<Optional<TestModel>>());
+        missing.awaitTerminalEvent(2, SECONDS);
+        missing.assertError(IllegalArgumentException.class);
+        Assert.assertEquals(0, outbox.size());
+        Assert.assertEquals(1, localDao.size());
+
+        remote.update(new TestModel(2, "d")).blockingFirst();
+        for (int i = 0; i < 100 && delivered.size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(2, delivered.size());
+        Assert.assertEquals("d", delivered.get(1).updates.get(0).getName());
+    }
+
+    @Test
+    public void testReadsKeepPendingWrites() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(Integer.MAX_VALUE);
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, BY_ID);
+        Outbox<TestModel> outbox = new Outbox<>(directory, "test", CODEC);
+
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<WriteBatch<TestModel>> applyBatch(WriteBatch<TestModel> batch) {
+                if (failures.getAndDecrement() > 0) {
+                    return Flowable.error(new Throwable("applyBatch.error"));
+                }
+                return Flowable.just(batch);
+            }
+
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.just(Optional.wrap(new TestModel((Integer) id, "remote")));
+            }
+
+            @Override
+            public Flowable<Optional<List<TestModel>>> getAll(Filter filter, SortingMode sortingMode) {
+                return Flowable.just(Optional.wrap(Arrays.asList(new TestModel(1, "remote"), new TestModel(3, "remote"))));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {})
+                .withKeyExtractor(BY_ID)
+                .enableOutbox(outbox, 0, MILLISECONDS, 100);
+
+        remote.insert(new TestModel(1, "local")).blockingFirst();
+        remote.insert(new TestModel(2, "local")).blockingFirst();
+
+        // the dao has not received the writes yet : its versions are not written back
+        Assert.assertEquals("remote", remote.getById(1).blockingLast().get().getName());
+        Assert.assertEquals("local", localDao.getById(1).blockingFirst().get().getName());
+
+        // nor is a full refresh allowed to drop them
+        remote.getAll().blockingLast();
+        Assert.assertEquals(3, localDao.size());
+        Assert.assertEquals("local", localDao.getById(1).blockingFirst().get().getName());
+        Assert.assertEquals("remote", localDao.getById(3).blockingFirst().get().getName());
+
+        // written back once delivered
+        failures.set(0);
+        remote.flushWrites();
+        for (int i = 0; i < 100 && outbox.size() > 0; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(0, outbox.size());
+        remote.getById(1).blockingLast();
+        Assert.assertEquals("remote", localDao.getById(1).blockingFirst().get().getName());
+    }
+
+    @After
+    public void after() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
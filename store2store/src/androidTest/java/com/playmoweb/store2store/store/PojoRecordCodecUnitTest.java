@@ -0,0 +1,60 @@
+package com.playmoweb.store2store.store;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Test the reflective record codec
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class PojoRecordCodecUnitTest {
+    private final PojoRecordCodec<TestModel> codec = new PojoRecordCodec<>(TestModel.class);
+
+    @Test
+    public void testRoundTrip() {
+        final TestModel model = new TestModel(42, "caf\u00e9 \u20ac \ud83d\ude00");
+        model.setAvailable(true);
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+        buffer.position(10); // encoded where the caller asks
+        codec.encode(model, buffer);
+        Assert.assertEquals(10 + codec.encodedSize(model), buffer.position());
+
+        buffer.limit(buffer.position()).position(10);
+        final TestModel decoded = codec.decode(buffer);
+        Assert.assertEquals(42, decoded.getId());
+        Assert.assertEquals(model.getName(), decoded.getName());
+        Assert.assertTrue(decoded.isAvailable());
+        Assert.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testNullField() {
+        final TestModel model = new TestModel(7);
+        final ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(model));
+        codec.encode(model, buffer);
+        buffer.flip();
+
+        final TestModel decoded = codec.decode(buffer);
+        Assert.assertEquals(7, decoded.getId());
+        Assert.assertNull(decoded.getName());
+        Assert.assertFalse(decoded.isAvailable());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testVersionMismatch() {
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        new PojoRecordCodec<>(TestModel.class, 2).encode(new TestModel(1, "one"), buffer);
+        buffer.flip();
+        codec.decode(buffer);
+    }
+}
@@ -6,6 +6,9 @@ import com.playmoweb.store2store.mock.MemoryDao;
 import com.playmoweb.store2store.mock.MemoryStore;
 import com.playmoweb.store2store.mock.TestModel;
 import com.playmoweb.store2store.mock.TestStore;
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.ReadPolicy;
 import com.playmoweb.store2store.utils.SortType;
 import com.playmoweb.store2store.utils.SortingMode;
 
@@ -14,15 +17,29 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.reactivestreams.Subscription;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import io.reactivex.Flowable;
 import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
 import io.reactivex.subscribers.TestSubscriber;
 
 import static com.playmoweb.store2store.mock.MemoryDao.models;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
@@ -168,6 +185,108 @@ public class StoreServiceUnitTest {
         Assert.assertEquals(60, sum);
     }
 
+    @Test
+    public void testGetAllWithReconciliation(){
+        models.clear();
+        testStore.withKeyExtractor(new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        }).enableReconciliation(new ContentHasher<TestModel>() {
+            @Override
+            public long hash(TestModel item) {
+                return item.getId() * 31L + (item.isAvailable() ? 1 : 0);
+            }
+        });
+
+        TestModel unchanged = new TestModel(10);
+        TestModel changed = new TestModel(20);
+        changed.setAvailable(true);
+        List<TestModel> list = new ArrayList<>();
+        list.add(unchanged);
+        list.add(changed);
+        list.add(new TestModel(40)); // removed remotely
+        memoryStore.insertOrUpdate(list);
+
+        testStore.getAll(null, null).blockingLast();
+
+        Assert.assertEquals(3, models.size());
+        Assert.assertSame(unchanged, models.get(0)); // not written again
+        for(TestModel tm : models){
+            Assert.assertFalse(tm.isAvailable());
+            Assert.assertNotEquals(40, tm.getId());
+        }
+    }
+
+    @Test
+    public void testStream(){
+        models.clear();
+
+        TestSubscriber<List<TestModel>> observer = new TestSubscriber<>(1);
+        disposables.add(testStore.stream(null, new SortingMode("id", SortType.ASCENDING), 2)
+                .subscribeOn(Schedulers.io())
+                .subscribeWith(observer));
+
+        Assert.assertFalse(observer.awaitTerminalEvent(2, SECONDS)); // waits for the next request
+        observer.assertValueCount(1);
+        Assert.assertEquals(2, observer.values().get(0).size());
+
+        observer.request(1);
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertComplete();
+        Assert.assertEquals(30, observer.values().get(1).get(0).getId());
+        Assert.assertEquals(3, models.size()); // written back page by page
+    }
+
+    @Test
+    public void testGetAllWithFreshness(){
+        models.clear();
+        models.add(new TestModel(1));
+        testStore.setFreshnessPolicy(FreshnessPolicy.maxAge(1, MINUTES).staleIfError());
+
+        Assert.assertEquals(2, testStore.getAll().toList().blockingGet().size()); // refreshed from the dao
+        Assert.assertEquals(1, testStore.getAll().toList().blockingGet().size()); // fresh : synced store only
+        Assert.assertEquals(2, testStore.getAll(null, null, null).toList().blockingGet().size());
+
+        // stale and the dao fails : the local data is kept
+        testStore.invalidateFreshness();
+        testStore.shouldThrowError(true);
+        TestSubscriber<Optional<List<TestModel>>> observer = new TestSubscriber<>();
+        disposables.add(testStore.getAll()
+                .subscribeOn(Schedulers.io())
+                .subscribeWith(observer));
+
+        observer.awaitTerminalEvent(2, SECONDS);
+        testStore.shouldThrowError(false);
+        observer.assertNoErrors();
+        observer.assertValueCount(1);
+    }
+
+    @Test
+    public void testStaleWhileRevalidate(){
+        final AtomicInteger remoteReads = new AtomicInteger();
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                remoteReads.incrementAndGet();
+                return Flowable.just(Optional.wrap(new TestModel((Integer) id, "remote")));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, new InMemoryStoreDao<>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        })) {}).setFreshnessPolicy(FreshnessPolicy.maxAge(0, SECONDS).staleWhileRevalidate(1, MINUTES));
+
+        Assert.assertEquals(2, remote.getById(1).toList().blockingGet().size()); // never refreshed : both stores
+        Assert.assertEquals(1, remote.getById(1).toList().blockingGet().size()); // stale : refreshed in background
+        Assert.assertEquals(2, remoteReads.get());
+
+        // the synchronous refresh terminated before being tracked : nothing is left behind
+        Assert.assertEquals(0, remote.compositeDisposable.size());
+    }
+
     @Test
     public void testGetAllWithError(){
         models.clear();
@@ -597,6 +716,138 @@ public class StoreServiceUnitTest {
         }
     }
 
+    @Test
+    public void testGetByIds(){
+        models.clear();
+
+        TestSubscriber<Optional<List<TestModel>>> observer = new TestSubscriber<>();
+        disposables.add(testStore.getByIds(Arrays.asList(10, 30, 40))
+                .subscribeOn(Schedulers.io())
+                .subscribeWith(observer));
+
+        observer.awaitTerminalEvent(4, SECONDS);
+        observer.assertComplete();
+        observer.assertNoErrors();
+
+        Assert.assertEquals(0, observer.values().get(0).get().size()); // from the memory store
+        Assert.assertEquals(2, observer.values().get(1).get().size());
+        Assert.assertEquals(2, models.size()); // written back
+    }
+
+    @Test
+    public void testUpdateListByIds(){
+        models.clear();
+        testStore.withKeyExtractor(new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        });
+
+        List<TestModel> list = new ArrayList<>();
+        list.add(new TestModel(1));
+        list.add(new TestModel(2));
+        memoryStore.insertOrUpdate(list);
+
+        List<TestModel> updateList = new ArrayList<>();
+        TestModel testModel = new TestModel(1);
+        testModel.setAvailable(true);
+        updateList.add(testModel);
+        updateList.add(testModel); // same id twice
+
+        testStore.update(updateList).blockingFirst(); // the copy is read by ids, the repeated id exists
+        Assert.assertTrue(models.get(0).isAvailable());
+
+        updateList.add(new TestModel(3)); // does not exist
+        TestSubscriber<Optional<List<TestModel>>> observer = new TestSubscriber<>();
+        disposables.add(testStore.update(updateList).subscribeWith(observer));
+        observer.awaitTerminalEvent(4, SECONDS);
+        observer.assertError(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testUpdateOfMissingItemIsNotWritten(){
+        final AtomicInteger localWrites = new AtomicInteger();
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<TestModel, Integer>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        }) {
+            @Override
+            public Flowable<Optional<List<TestModel>>> insertOrUpdateReturningPrevious(List<TestModel> items) {
+                localWrites.incrementAndGet();
+                return super.insertOrUpdateReturningPrevious(items);
+            }
+
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdateReturningPrevious(TestModel item) {
+                localWrites.incrementAndGet();
+                return super.insertOrUpdateReturningPrevious(item);
+            }
+        };
+        localDao.insertOrUpdate(new TestModel(1)).blockingFirst();
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<List<TestModel>>> update(List<TestModel> items) {
+                return Flowable.just(Optional.wrap(items));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {}).withKeyExtractor(new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        });
+
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(remote.update(new TestModel(2)).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertError(IllegalArgumentException.class);
+
+        TestSubscriber<Optional<List<TestModel>>> listObserver = new TestSubscriber<>();
+        disposables.add(remote.update(Arrays.asList(new TestModel(1), new TestModel(2))).subscribeWith(listObserver));
+        listObserver.awaitTerminalEvent(2, SECONDS);
+        listObserver.assertError(IllegalArgumentException.class);
+
+        // the synced store was never written, not even for a while
+        Assert.assertEquals(0, localWrites.get());
+        Assert.assertEquals(1, localDao.size());
+
+        Assert.assertEquals(2, remote.update(Arrays.asList(new TestModel(1, "updated"))).toList().blockingGet().size());
+        Assert.assertEquals("updated", localDao.getById(1).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testUpdateOfItemEvictedFromACache(){
+        final KeyExtractor<TestModel, Integer> byId = new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        };
+        final InMemoryStoreDao<TestModel, Integer> remoteDao = new InMemoryStoreDao<TestModel, Integer>(TestModel.class, byId) {
+            @Override
+            public Flowable<Optional<List<TestModel>>> update(List<TestModel> items) {
+                return insertOrUpdate(items);
+            }
+        };
+        final CacheStore<TestModel, Integer> cache = new CacheStore<>(TestModel.class, byId, 1);
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, remoteDao) {}.withKeyExtractor(byId).syncWith(cache);
+        remote.insertOrUpdate(Arrays.asList(new TestModel(1), new TestModel(2))).toList().blockingGet();
+        Assert.assertEquals(1, cache.getDao().getAll(null, null).blockingFirst().get().size());
+
+        // the evicted item exists in the remote store : it can be updated
+        Assert.assertEquals(2, remote.update(Arrays.asList(new TestModel(1, "a"), new TestModel(2, "b"))).toList().blockingGet().size());
+        Assert.assertEquals("a", remoteDao.getById(1).blockingFirst().get().getName());
+        Assert.assertEquals("b", remoteDao.getById(2).blockingFirst().get().getName());
+
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(remote.update(new TestModel(42)).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertError(IllegalArgumentException.class);
+        Assert.assertTrue(remoteDao.getById(42).blockingFirst().isNull());
+    }
+
     @Test
     public void testUpdateListWithError(){
         models.clear();
@@ -700,6 +951,690 @@ public class StoreServiceUnitTest {
         }
     }
 
+    @Test
+    public void testQueryCache(){
+        models.clear();
+        MemoryStore cachedStore = new MemoryStore();
+        try {
+            cachedStore.enableQueryCache(10);
+            Assert.fail("The query cache needs the primary key");
+        } catch (IllegalStateException expected) {
+        }
+        cachedStore.withKeyExtractor(new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        }).enableQueryCache(10);
+
+        List<TestModel> list = new ArrayList<>();
+        list.add(new TestModel(1));
+        list.add(new TestModel(2));
+        list.add(new TestModel(3));
+        cachedStore.insertOrUpdate(list).blockingFirst();
+
+        Filter filter = new Filter("id", FilterType.GREATER_THAN, 1);
+        Assert.assertEquals(2, cachedStore.getAll(filter).blockingLast().get().size());
+
+        models.add(new TestModel(4)); // not seen by the cache
+        Assert.assertEquals(2, cachedStore.getAll(filter).blockingLast().get().size());
+
+        cachedStore.insertOrUpdate(new TestModel(0)).blockingFirst(); // can't match the query
+        Assert.assertEquals(2, cachedStore.getAll(filter).blockingLast().get().size());
+
+        cachedStore.insertOrUpdate(new TestModel(5)).blockingFirst(); // matches the query
+        Assert.assertEquals(4, cachedStore.getAll(filter).blockingLast().get().size());
+
+        cachedStore.delete(new TestModel(2)).blockingFirst(); // contained in the result
+        Assert.assertEquals(3, cachedStore.getAll(filter).blockingLast().get().size());
+    }
+
+    @Test
+    public void testRequestCoalescing(){
+        final AtomicInteger reads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        StoreService<TestModel> store = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(final S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        reads.incrementAndGet();
+                        Assert.assertTrue(release.await(2, SECONDS)); // in flight until every read is subscribed
+                        return Optional.wrap(new TestModel((Integer) id));
+                    }
+                }).subscribeOn(Schedulers.io());
+            }
+        }) {}.enableRequestCoalescing();
+
+        TestSubscriber<Optional<TestModel>> first = new TestSubscriber<>();
+        TestSubscriber<Optional<TestModel>> second = new TestSubscriber<>();
+        TestSubscriber<Optional<TestModel>> other = new TestSubscriber<>();
+        disposables.add(store.getById(1).subscribeWith(first));
+        disposables.add(store.getById(1).subscribeWith(second));
+        disposables.add(store.getById(2).subscribeWith(other));
+        release.countDown();
+
+        first.awaitTerminalEvent(2, SECONDS);
+        second.awaitTerminalEvent(2, SECONDS);
+        other.awaitTerminalEvent(2, SECONDS);
+        Assert.assertEquals(2, reads.get()); // one read by id
+        Assert.assertSame(first.values().get(0).get(), second.values().get(0).get());
+
+        store.getById(1).blockingFirst(); // the shared read is over
+        Assert.assertEquals(3, reads.get());
+    }
+
+    @Test
+    public void testWriteBehind(){
+        final List<List<TestModel>> batches = new ArrayList<>();
+        final HistogramStoreMetrics metrics = new HistogramStoreMetrics();
+        final TestScheduler scheduler = new TestScheduler();
+        StoreService<TestModel> store = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<List<TestModel>>> insertOrUpdate(List<TestModel> items) {
+                batches.add(items);
+                for(TestModel tm : items){
+                    if(tm.getId() == 99){
+                        return Flowable.error(new Exception("insertOrUpdate.error"));
+                    }
+                }
+                return Flowable.just(Optional.wrap(items));
+            }
+        }) {}.withKeyExtractor(new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        }).setMetrics(metrics).setExecutionPolicy(ExecutionPolicy.CALLER.remote(scheduler)).enableWriteBehind(200, MILLISECONDS, 10);
+
+        TestSubscriber<Optional<TestModel>> first = new TestSubscriber<>();
+        TestSubscriber<Optional<TestModel>> second = new TestSubscriber<>();
+        TestSubscriber<Optional<TestModel>> last = new TestSubscriber<>();
+        disposables.add(store.insertOrUpdate(new TestModel(1, "a")).subscribeWith(first));
+        disposables.add(store.update(new TestModel(2)).subscribeWith(second));
+        disposables.add(store.insertOrUpdate(new TestModel(1, "b")).subscribeWith(last));
+
+        // the window is timed by the remote scheduler of the policy
+        scheduler.advanceTimeBy(199, MILLISECONDS);
+        Assert.assertEquals(0, batches.size());
+        scheduler.advanceTimeBy(1, MILLISECONDS);
+        first.assertComplete();
+        second.assertComplete();
+        last.assertComplete();
+        Assert.assertEquals(1, batches.size()); // one call for the three writes
+        Assert.assertEquals(2, batches.get(0).size()); // the writes of the id 1 are collapsed
+        Assert.assertEquals("b", first.values().get(0).get().getName());
+        Assert.assertEquals("b", last.values().get(0).get().getName());
+        second.assertValueCount(1);
+
+        TestSubscriber<Optional<TestModel>> failed = new TestSubscriber<>();
+        disposables.add(store.insertOrUpdate(new TestModel(99)).subscribeWith(failed));
+        store.flushWrites();
+        scheduler.triggerActions(); // sent on the remote scheduler
+        failed.assertErrorMessage("insertOrUpdate.error");
+
+        // the batches are measured as the other calls to the dao
+        HistogramStoreMetrics.OperationStats sent = metrics.get(store.getClass(), "insertOrUpdate", StoreMetrics.Tier.REMOTE);
+        Assert.assertEquals(2, sent.durations.count());
+        Assert.assertEquals(1, sent.getErrorCount());
+    }
+
+    @Test
+    public void testWriteBehindRollback(){
+        final KeyExtractor<TestModel, Integer> byId = new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        };
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, byId);
+        localDao.insertOrUpdate(new TestModel(2, "old")).blockingFirst();
+
+        StoreService<TestModel> store = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<List<TestModel>>> insertOrUpdate(List<TestModel> items) {
+                return Flowable.error(new Exception("insertOrUpdate.error"));
+            }
+        }) {}.withKeyExtractor(byId).syncWith(new StoreService<TestModel>(TestModel.class, localDao) {})
+                .enableWriteBehind(1, SECONDS, 10);
+
+        List<TestSubscriber<Optional<TestModel>>> writers = new ArrayList<>();
+        for (String name : Arrays.asList("a", "b", "c")) {
+            writers.add(store.insertOrUpdate(new TestModel(1, name)).subscribeWith(new TestSubscriber<Optional<TestModel>>()));
+            writers.add(store.update(new TestModel(2, name)).subscribeWith(new TestSubscriber<Optional<TestModel>>()));
+        }
+        Assert.assertEquals("c", localDao.getById(1).blockingFirst().get().getName());
+        store.flushWrites();
+
+        for (TestSubscriber<Optional<TestModel>> writer : writers) {
+            writer.awaitTerminalEvent(2, SECONDS);
+            writer.assertErrorMessage("insertOrUpdate.error");
+            disposables.add(writer);
+        }
+        // each key is back to its version before the window
+        Assert.assertTrue(localDao.getById(1).blockingFirst().isNull());
+        Assert.assertEquals("old", localDao.getById(2).blockingFirst().get().getName());
+        Assert.assertEquals(1, localDao.size());
+    }
+
+    @Test
+    public void testSync(){
+        models.clear();
+        models.add(new TestModel(1));
+        models.add(new TestModel(2));
+
+        final List<String> tokens = new ArrayList<>();
+        StoreService<TestModel> store = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<ChangeSet<TestModel>> getChangesSince(String token) {
+                tokens.add(token);
+                if (token == null) { // full snapshot
+                    TestModel updated = new TestModel(2);
+                    updated.setAvailable(true);
+                    return Flowable.just(new ChangeSet<>(Arrays.asList(updated, new TestModel(3)), Collections.emptyList(), "t1"));
+                }
+                return Flowable.just(new ChangeSet<>(Collections.singletonList(new TestModel(4)), Arrays.asList(3, 42), "t2"));
+            }
+        }) {}.syncWith(memoryStore);
+
+        ChangeSet<TestModel> changes = store.sync().blockingFirst();
+        Assert.assertEquals("t1", changes.token);
+        Assert.assertEquals("t1", store.getSyncToken());
+
+        Assert.assertEquals(2, models.size()); // 1 missing from the snapshot, 2 updated, 3 inserted
+        Assert.assertEquals(2, models.get(0).getId());
+        Assert.assertTrue(models.get(0).isAvailable());
+        Assert.assertEquals(3, models.get(1).getId());
+
+        store.sync().blockingFirst();
+        Assert.assertEquals(Arrays.asList(null, "t1"), tokens);
+        Assert.assertEquals("t2", store.getSyncToken());
+        Assert.assertEquals(2, models.size()); // 3 deleted, 4 inserted
+        Assert.assertEquals(2, models.get(0).getId());
+        Assert.assertEquals(4, models.get(1).getId());
+    }
+
+    @Test
+    public void testStoreChain(){
+        models.clear();
+        models.add(new TestModel(5));
+
+        final AtomicInteger remoteReads = new AtomicInteger();
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(final S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        remoteReads.incrementAndGet();
+                        return Optional.wrap(new TestModel((Integer) id));
+                    }
+                });
+            }
+
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdate(TestModel item) {
+                return Flowable.just(Optional.wrap(item));
+            }
+        }) {}.setReadPolicy(ReadPolicy.FIRST_HIT);
+
+        InMemoryStoreDao<TestModel, Integer> heapDao = new InMemoryStoreDao<>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        });
+        StoreService<TestModel> heap = new StoreService<TestModel>(TestModel.class, heapDao) {};
+        remote.syncWith(Arrays.<StoreService<TestModel>>asList(heap, memoryStore));
+        Assert.assertSame(heap, memoryStore.getSyncedStore());
+
+        // found on the second store : the remote is not read and the first store is backfilled
+        List<Optional<TestModel>> values = remote.getById(5).toList().blockingGet();
+        Assert.assertEquals(1, values.size());
+        Assert.assertEquals(5, values.get(0).get().getId());
+        Assert.assertEquals(0, remoteReads.get());
+        Assert.assertEquals(1, heapDao.size());
+
+        // missing everywhere : read from the remote and written in every store
+        Assert.assertEquals(6, remote.getById(6).blockingLast().get().getId());
+        Assert.assertEquals(1, remoteReads.get());
+        Assert.assertEquals(2, models.size());
+        Assert.assertEquals(2, heapDao.size());
+    }
+
+    @Test
+    public void testParallelReads(){
+        final AtomicInteger remoteFails = new AtomicInteger();
+        final AtomicReference<CountDownLatch> remoteCalled = new AtomicReference<>(new CountDownLatch(1));
+        final List<String> calls = new CopyOnWriteArrayList<>();
+        StoreService<TestModel> local = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        remoteCalled.get().await(2, SECONDS); // answers once the dao was called, if it is called at once
+                        calls.add("local");
+                        return Optional.wrap(new TestModel(1));
+                    }
+                });
+            }
+
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdate(TestModel item) {
+                return Flowable.just(Optional.wrap(item));
+            }
+        }) {};
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        calls.add("remote");
+                        remoteCalled.get().countDown();
+                        if (remoteFails.get() > 0) {
+                            throw new Exception("getById.error");
+                        }
+                        TestModel updated = new TestModel(1);
+                        updated.setAvailable(true);
+                        return Optional.wrap(updated);
+                    }
+                });
+            }
+        }) {}.syncWith(local);
+
+        // both stores are read at once, the synced store is emitted first
+        List<Optional<TestModel>> values = remote.getById(1).toList().blockingGet();
+        Assert.assertEquals(Arrays.asList("remote", "local"), calls);
+        Assert.assertEquals(2, values.size());
+        Assert.assertFalse(values.get(0).get().isAvailable());
+        Assert.assertTrue(values.get(1).get().isAvailable());
+
+        // the dao fails before the synced store answers : its error still comes last
+        remoteFails.set(1);
+        remoteCalled.set(new CountDownLatch(1));
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(remote.getById(1).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertValueCount(1);
+        observer.assertErrorMessage("getById.error");
+
+        // sequential reads : the dao is called once the synced store answered
+        remoteFails.set(0);
+        remoteCalled.set(new CountDownLatch(0));
+        calls.clear();
+        Assert.assertEquals(2, remote.setParallelReads(false).getById(1).toList().blockingGet().size());
+        Assert.assertEquals(Arrays.asList("local", "remote"), calls);
+    }
+
+    @Test
+    public void testParallelReadsWithSynchronousDao(){
+        final KeyExtractor<TestModel, Integer> byId = new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        };
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, byId);
+        localDao.insertOrUpdate(new TestModel(1, "cached")).blockingFirst();
+        final CountDownLatch release = new CountDownLatch(1);
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        Assert.assertTrue(release.await(2, SECONDS)); // blocking until the synced store was emitted
+                        return Optional.wrap(new TestModel(1, "remote"));
+                    }
+                });
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {});
+
+        // the dao does not block the caller, the synced store is read before the write-back
+        TestSubscriber<Optional<TestModel>> observer = remote.getById(1).subscribeWith(new TestSubscriber<Optional<TestModel>>());
+        disposables.add(observer);
+        observer.assertValueCount(1);
+        Assert.assertEquals("cached", observer.values().get(0).get().getName());
+        release.countDown();
+
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertComplete();
+        Assert.assertEquals("remote", observer.values().get(1).get().getName());
+        Assert.assertEquals("remote", localDao.getById(1).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testParallelReadsWriteBackAfterLocalRead(){
+        final CountDownLatch fetched = new CountDownLatch(1);
+        final CountDownLatch cleared = new CountDownLatch(1);
+        final InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<TestModel, Integer>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        }) {
+            @Override
+            public Flowable<Optional<List<TestModel>>> getAll(final Filter filter, final SortingMode sortingMode) {
+                return Flowable.defer(new Callable<Flowable<Optional<List<TestModel>>>>() {
+                    @Override
+                    public Flowable<Optional<List<TestModel>>> call() throws Exception {
+                        // a slow local read : the dao answered, its write-back must not start before the read ends
+                        Assert.assertTrue(fetched.await(2, SECONDS));
+                        Assert.assertFalse(cleared.await(200, MILLISECONDS));
+                        return read(filter, sortingMode);
+                    }
+                });
+            }
+
+            private Flowable<Optional<List<TestModel>>> read(Filter filter, SortingMode sortingMode) {
+                return super.getAll(filter, sortingMode);
+            }
+
+            @Override
+            public Flowable<Integer> deleteAll() {
+                cleared.countDown();
+                return super.deleteAll();
+            }
+        };
+        localDao.insertOrUpdate(Arrays.asList(new TestModel(1, "cached"), new TestModel(2, "cached"), new TestModel(3, "cached"))).blockingFirst();
+
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<List<TestModel>>> getAll(Filter filter, SortingMode sortingMode) {
+                fetched.countDown();
+                return Flowable.just(Optional.wrap(Arrays.asList(new TestModel(1, "remote"), new TestModel(2, "remote"), new TestModel(3, "remote"))));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {});
+
+        TestSubscriber<Optional<List<TestModel>>> observer = new TestSubscriber<>();
+        disposables.add(remote.getAll().subscribeOn(Schedulers.io()).subscribeWith(observer));
+        observer.awaitTerminalEvent(5, SECONDS);
+        observer.assertNoErrors();
+        observer.assertValueCount(2);
+        Assert.assertEquals(3, observer.values().get(0).get().size());
+        Assert.assertEquals("cached", observer.values().get(0).get().get(0).getName());
+        Assert.assertEquals("remote", observer.values().get(1).get().get(0).getName());
+        Assert.assertEquals("remote", localDao.getById(1).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testParallelReadCancelled() throws InterruptedException {
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.<Optional<TestModel>>never()
+                        .doOnSubscribe(new Consumer<Subscription>() {
+                            @Override
+                            public void accept(Subscription subscription) throws Exception {
+                                subscribed.countDown();
+                            }
+                        })
+                        .doOnCancel(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                cancelled.countDown();
+                            }
+                        });
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        Assert.assertTrue(subscribed.await(2, SECONDS)); // the dao is being read
+                        return Optional.wrap(new TestModel(1, "cached"));
+                    }
+                });
+            }
+        }) {});
+
+        // the subscriber keeps the local result only : the read of the dao started with it is cancelled
+        Assert.assertEquals("cached", remote.getById(1).take(1).blockingFirst().get().getName());
+        Assert.assertTrue(cancelled.await(2, SECONDS));
+    }
+
+    @Test
+    public void testExecutionPolicy(){
+        final List<String> threads = new ArrayList<>(); // local read, remote read, write-back
+        StoreService<TestModel> local = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        threads.add(Thread.currentThread().getName());
+                        return Optional.wrap(new TestModel(1));
+                    }
+                });
+            }
+
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdate(final TestModel item) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        threads.add(Thread.currentThread().getName());
+                        return Optional.wrap(item);
+                    }
+                });
+            }
+        }) {};
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public <S> Flowable<Optional<TestModel>> getById(S id) {
+                return Flowable.fromCallable(new Callable<Optional<TestModel>>() {
+                    @Override
+                    public Optional<TestModel> call() throws Exception {
+                        threads.add(Thread.currentThread().getName());
+                        return Optional.wrap(new TestModel(1, "remote"));
+                    }
+                });
+            }
+        }) {}.syncWith(local).setParallelReads(false).setExecutionPolicy(ExecutionPolicy.standard());
+
+        List<Optional<TestModel>> values = remote.getById(1).toList().blockingGet();
+        Assert.assertEquals(2, values.size());
+        Assert.assertNull(values.get(0).get().getName());
+        Assert.assertEquals("remote", values.get(1).get().getName());
+
+        Assert.assertEquals(3, threads.size());
+        Assert.assertTrue(threads.get(0).startsWith("RxComputationThreadPool"));
+        Assert.assertTrue(threads.get(1).startsWith("RxCachedThreadScheduler"));
+        Assert.assertEquals("store2store-writer", threads.get(2));
+        Assert.assertSame(ExecutionPolicy.standard(), ExecutionPolicy.standard());
+    }
+
+    @Test
+    public void testRollbackWithoutRead(){
+        final AtomicInteger localReads = new AtomicInteger();
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<TestModel, Integer>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        }) {
+            @Override
+            public Flowable<Optional<TestModel>> getOne(TestModel item) {
+                localReads.incrementAndGet();
+                return super.getOne(item);
+            }
+        };
+        localDao.insertOrUpdate(new TestModel(1, "before")).blockingFirst();
+
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdate(TestModel item) {
+                return Flowable.error(new Throwable("insertOrUpdate.error"));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {});
+
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(remote.insertOrUpdate(new TestModel(1, "after")).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertErrorMessage("insertOrUpdate.error");
+
+        // the previous version came with the local write and is restored
+        Assert.assertEquals(0, localReads.get());
+        Assert.assertEquals("before", localDao.getById(1).blockingFirst().get().getName());
+
+        observer = new TestSubscriber<>();
+        disposables.add(remote.insertOrUpdate(new TestModel(2)).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        Assert.assertEquals(1, localDao.size());
+    }
+
+    @Test
+    public void testReturningPreviousFromSlowestTier(){
+        final KeyExtractor<TestModel, Integer> byId = new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        };
+        final InMemoryStoreDao<TestModel, Integer> remoteDao = new InMemoryStoreDao<>(TestModel.class, byId);
+        final InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, byId);
+        remoteDao.insertOrUpdate(new TestModel(1, "remote")).blockingFirst();
+        localDao.insertOrUpdate(new TestModel(1, "stale")).blockingFirst();
+
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, remoteDao) {}
+                .syncWith(new StoreService<TestModel>(TestModel.class, localDao) {});
+
+        // the previous version is the one of the dao, not the stale local one
+        Assert.assertEquals("remote", remote.insertOrUpdateReturningPrevious(new TestModel(1, "after")).blockingLast().get().getName());
+        Assert.assertEquals("after", localDao.getById(1).blockingFirst().get().getName());
+        Assert.assertEquals("after", remoteDao.getById(1).blockingFirst().get().getName());
+
+        List<TestModel> previous = remote.insertOrUpdateReturningPrevious(Arrays.asList(new TestModel(1, "again"), new TestModel(2)))
+                .blockingLast().get();
+        Assert.assertEquals(1, previous.size());
+        Assert.assertEquals("after", previous.get(0).getName());
+
+        // a failure of the dao undoes the local write
+        remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdateReturningPrevious(TestModel item) {
+                return Flowable.error(new Throwable("insertOrUpdateReturningPrevious.error"));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {});
+
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(remote.insertOrUpdateReturningPrevious(new TestModel(1, "lost")).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertErrorMessage("insertOrUpdateReturningPrevious.error");
+        Assert.assertEquals("again", localDao.getById(1).blockingFirst().get().getName());
+    }
+
+    @Test
+    public void testMetrics(){
+        final HistogramStoreMetrics metrics = new HistogramStoreMetrics();
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        });
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<Optional<List<TestModel>>> getAll(Filter filter, SortingMode sortingMode) {
+                return Flowable.just(Optional.wrap(Arrays.asList(new TestModel(1), new TestModel(2)))).delay(100, MILLISECONDS);
+            }
+
+            @Override
+            public Flowable<Optional<TestModel>> insertOrUpdate(TestModel item) {
+                return Flowable.error(new Throwable("insertOrUpdate.error"));
+            }
+        }) {}.syncWith(new StoreService<TestModel>(TestModel.class, localDao) {}).setMetrics(metrics);
+
+        Assert.assertEquals(2, remote.getAll(null, null).toList().blockingGet().size());
+        HistogramStoreMetrics.OperationStats remoteReads = metrics.get(remote.getClass(), "getAll", StoreMetrics.Tier.REMOTE);
+        Assert.assertEquals(1, remoteReads.durations.count());
+        Assert.assertTrue(remoteReads.durations.max() >= MILLISECONDS.toNanos(100));
+        Assert.assertEquals(2, remoteReads.resultSizes.max());
+        Assert.assertEquals(1, metrics.get(remote.getClass(), "getAll", StoreMetrics.Tier.LOCAL).durations.count());
+        Assert.assertEquals(1, metrics.get(remote.getClass(), "insertOrUpdate", StoreMetrics.Tier.LOCAL).durations.count()); // write-back
+
+        TestSubscriber<Optional<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(remote.insertOrUpdate(new TestModel(1, "after")).subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        Assert.assertEquals(1, metrics.get(remote.getClass(), "insertOrUpdate", StoreMetrics.Tier.REMOTE).getErrorCount());
+        Assert.assertEquals(1, metrics.getRollbackCount(remote.getClass(), "insertOrUpdate"));
+        Assert.assertEquals(remoteReads, metrics.getAll().get(0)); // the slowest first
+    }
+
+    @Test
+    public void testUnitOfWork(){
+        final KeyExtractor<TestModel, Integer> byId = new KeyExtractor<TestModel, Integer>() {
+            @Override
+            public Integer getKey(TestModel item) {
+                return item.getId();
+            }
+        };
+        InMemoryStoreDao<TestModel, Integer> localDao = new InMemoryStoreDao<>(TestModel.class, byId);
+        localDao.insertOrUpdate(Arrays.asList(new TestModel(3, "old"), new TestModel(4))).blockingFirst();
+
+        final List<WriteBatch<TestModel>> batches = new ArrayList<>();
+        final AtomicInteger remoteFails = new AtomicInteger();
+        StoreService<TestModel> remote = new StoreService<TestModel>(TestModel.class, new StoreDao<TestModel>() {
+            @Override
+            public Flowable<WriteBatch<TestModel>> applyBatch(WriteBatch<TestModel> batch) {
+                batches.add(batch);
+                return remoteFails.get() > 0 ? Flowable.<WriteBatch<TestModel>>error(new Throwable("applyBatch.error")) : Flowable.just(batch);
+            }
+        }) {}.withKeyExtractor(byId).syncWith(new StoreService<TestModel>(TestModel.class, localDao) {});
+
+        // normalized : 2 is inserted then deleted, 3 is updated twice
+        UnitOfWork<TestModel> work = remote.transaction()
+                .insert(new TestModel(1))
+                .insert(new TestModel(2))
+                .update(new TestModel(3, "first"))
+                .delete(new TestModel(2))
+                .update(new TestModel(3, "second"))
+                .delete(new TestModel(4));
+        Assert.assertEquals(3, work.size());
+
+        // a failure of the dao restores the synced store
+        remoteFails.set(1);
+        TestSubscriber<WriteBatch<TestModel>> observer = new TestSubscriber<>();
+        disposables.add(work.commit().subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertErrorMessage("applyBatch.error");
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(2, localDao.size());
+        Assert.assertEquals("old", localDao.getById(3).blockingFirst().get().getName());
+        Assert.assertTrue(localDao.getById(1).blockingFirst().isNull());
+
+        // a single batch for the dao
+        remoteFails.set(0);
+        List<WriteBatch<TestModel>> values = remote.transaction()
+                .insert(new TestModel(1))
+                .update(new TestModel(3, "second"))
+                .delete(new TestModel(4))
+                .commit().toList().blockingGet();
+        Assert.assertEquals(2, values.size());
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(1, batches.get(1).inserts.size());
+        Assert.assertEquals(1, batches.get(1).updates.size());
+        Assert.assertEquals(0, batches.get(1).upserts.size());
+        Assert.assertEquals(1, batches.get(1).deletes.size());
+        Assert.assertEquals(2, localDao.size());
+        Assert.assertEquals("second", localDao.getById(3).blockingFirst().get().getName());
+
+        // an update of a missing item is refused before reaching the dao
+        observer = new TestSubscriber<>();
+        disposables.add(remote.transaction().update(new TestModel(42)).commit().subscribeWith(observer));
+        observer.awaitTerminalEvent(2, SECONDS);
+        observer.assertError(IllegalArgumentException.class);
+        Assert.assertEquals(2, batches.size());
+        Assert.assertEquals(2, localDao.size());
+        Assert.assertTrue(localDao.getById(42).blockingFirst().isNull());
+    }
+
     @After
     public void after() {
         disposables.clear();
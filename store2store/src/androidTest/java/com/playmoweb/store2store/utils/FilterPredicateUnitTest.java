@@ -0,0 +1,51 @@
+package com.playmoweb.store2store.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test the compiled filters
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class FilterPredicateUnitTest {
+
+    @Test
+    public void testEmptyFilterMatchesAll() {
+        Assert.assertTrue(FilterPredicate.compile(TestModel.class, null).matchesAll());
+        Assert.assertTrue(FilterPredicate.compile(TestModel.class, new Filter()).test(new TestModel(1)));
+    }
+
+    @Test
+    public void testConditionsAreCombined() {
+        TestModel available = new TestModel(15, "a");
+        available.setAvailable(true);
+
+        List<TestModel> list = new ArrayList<>();
+        list.add(new TestModel(5, "a"));
+        list.add(available);
+        list.add(new TestModel(25, "a"));
+
+        Filter filter = new Filter("id", FilterType.LESS_THAN, 20L); // numbers are compared by value
+        Assert.assertEquals(2, FilterPredicate.compile(TestModel.class, filter).filter(list).size());
+
+        filter = filter.add("available", true);
+        List<TestModel> output = FilterPredicate.compile(TestModel.class, filter).filter(list);
+        Assert.assertEquals(1, output.size());
+        Assert.assertEquals(15, output.get(0).getId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() {
+        FilterPredicate.compile(TestModel.class, new Filter("unknown", 1));
+    }
+}
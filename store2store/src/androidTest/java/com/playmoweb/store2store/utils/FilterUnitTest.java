@@ -0,0 +1,88 @@
+package com.playmoweb.store2store.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test the filters
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class FilterUnitTest {
+
+    @Test
+    public void testAddModifiesTheFilter() {
+        Filter filter = new Filter("id", 1);
+        filter.add("name", "a");
+        Assert.assertEquals(2, filter.size());
+        Assert.assertEquals("a", filter.get("name").value);
+
+        // the immutable copy keeps the conditions of the time
+        Filter snapshot = filter.immutable();
+        filter.remove("name");
+        Assert.assertEquals(1, filter.size());
+        Assert.assertEquals(2, snapshot.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testBuiltFiltersAreImmutable() {
+        Filter.builder().add("id", 1).build().add("name", "a");
+    }
+
+    @Test
+    public void testStructuralEquality() {
+        Filter first = new Filter("name", "a").add("id", FilterType.GREATER_THAN, 10);
+        Filter second = Filter.builder()
+                .add("id", FilterType.GREATER_THAN, 10L) // numbers are compared by value
+                .add("name", "a")
+                .build();
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first.hashCode(), second.hashCode());
+        Assert.assertNotEquals(first, new Filter(first).add("id", FilterType.GREATER_THAN, 11));
+
+        // equal to any map with the same conditions, both ways
+        Map<String, Filter.KeyValuePair> map = new HashMap<>(first);
+        Assert.assertEquals(map, first);
+        Assert.assertEquals(first, map);
+
+        // a built filter keeps the values given
+        Filter built = Filter.builder().add("id", FilterType.GREATER_THAN, 10).add("name", "a").build();
+        Assert.assertEquals(second, built);
+        Assert.assertEquals(Integer.class, built.get("id").value.getClass());
+    }
+
+    @Test
+    public void testManyValues() {
+        List<TestModel> list = new ArrayList<>();
+        list.add(new TestModel(1));
+        list.add(new TestModel(2));
+        list.add(new TestModel(3));
+
+        Filter anyOf = new Filter().anyOf("id", Arrays.asList(1, 3));
+        Assert.assertEquals(FilterType.IN, anyOf.get("id").filterType);
+        Assert.assertEquals(2, FilterPredicate.compile(TestModel.class, anyOf).filter(list).size());
+
+        Filter noneOf = Filter.builder().noneOf("id", Arrays.asList(1L, 3L)).build();
+        List<TestModel> output = FilterPredicate.compile(TestModel.class, noneOf).filter(list);
+        Assert.assertEquals(1, output.size());
+        Assert.assertEquals(2, output.get(0).getId());
+
+        // add() with many values keeps a single value, the last one
+        Filter last = new Filter().add("id", FilterType.EQUAL, new Integer[]{1, 3});
+        Assert.assertEquals(3, last.get("id").value);
+        Assert.assertEquals(1, FilterPredicate.compile(TestModel.class, last).filter(list).size());
+    }
+}
@@ -0,0 +1,49 @@
+package com.playmoweb.store2store.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import com.playmoweb.store2store.mock.TestModel;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test the compiled comparators
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+@RunWith(AndroidJUnit4.class)
+public class SortingModeUnitTest {
+
+    @Test
+    public void testEqualsAndComparatorReuse() {
+        SortingMode first = new SortingMode("name", SortType.ASCENDING).and("id", SortType.DESCENDING);
+        SortingMode second = SortingMode.with("name", SortType.ASCENDING).and("id", SortType.DESCENDING);
+
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first.hashCode(), second.hashCode());
+        Assert.assertNotEquals(first, new SortingMode("name", SortType.ASCENDING));
+        Assert.assertSame(first.comparator(TestModel.class), second.comparator(TestModel.class));
+    }
+
+    @Test
+    public void testCompositeSort() {
+        List<TestModel> list = new ArrayList<>();
+        list.add(new TestModel(1, "b"));
+        list.add(new TestModel(2, "a"));
+        list.add(new TestModel(3, "b"));
+        list.add(new TestModel(4, null));
+
+        Collections.sort(list, new SortingMode("name", SortType.ASCENDING).and("id", SortType.DESCENDING).comparator(TestModel.class));
+
+        Assert.assertEquals(4, list.get(0).getId()); // null first
+        Assert.assertEquals(2, list.get(1).getId());
+        Assert.assertEquals(3, list.get(2).getId());
+        Assert.assertEquals(1, list.get(3).getId());
+    }
+}
@@ -0,0 +1,39 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Immutable snapshot of the counters of a {@link CacheStoreDao}
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class CacheStats {
+    public final long hitCount;
+    public final long missCount;
+    public final long evictionCount;
+    public final long evictionWeight;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, long evictionWeight) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return  Ratio of lookups that found the item, 1 when no lookup was done
+     */
+    public double hitRate() {
+        final long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount
+                + ", evictions=" + evictionCount + ", evictionWeight=" + evictionWeight + "}";
+    }
+}
@@ -0,0 +1,30 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Store backed by a size bounded {@link CacheStoreDao}, to be synced with a remote store
+ *
+ * Usage :
+ *      remoteStore.syncWith(new CacheStore<>(MyModel.class, keyExtractor, 10000));
+ *
+ * @note    An update checks that its items exist in the cache, then in the remote store for the ones evicted : the
+ *          remote dao must implement getByIds (or getAll(items) without a key extractor).
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public class CacheStore<T, K> extends StoreService<T> {
+    private final CacheStoreDao<T, K> cacheDao;
+
+    public CacheStore(Class<T> clazz, KeyExtractor<T, K> keyExtractor, int maximumSize) {
+        this(clazz, new CacheStoreDao<>(clazz, keyExtractor, maximumSize));
+    }
+
+    public CacheStore(Class<T> clazz, CacheStoreDao<T, K> dao) {
+        super(clazz, dao);
+        this.cacheDao = dao;
+    }
+
+    public CacheStats getStats() {
+        return cacheDao.getStats();
+    }
+}
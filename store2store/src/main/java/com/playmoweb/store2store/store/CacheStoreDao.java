@@ -0,0 +1,98 @@
+package com.playmoweb.store2store.store;
+
+import java.util.List;
+
+/**
+ * Size bounded in-memory dao to be used as a local cache tier
+ * The budget is a maximum number of items or a maximum weight computed by a {@link Weigher}.
+ * Admission and eviction follow a W-TinyLFU policy : one-off scans written back by a remote read do not flush the
+ * items read frequently. Items evicted are simply missing from the next reads (the remote store has them).
+ *
+ * @note    Lookups by key (getById, getOne(item), getAll(items)) count as hits or misses, filtered queries do not.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public class CacheStoreDao<T, K> extends InMemoryStoreDao<T, K> {
+    private final Weigher<T> weigher;
+    private final TinyLfuPolicy<K> policy;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    private long evictionWeight = 0;
+
+    /**
+     * Cache bounded by a number of items
+     */
+    public CacheStoreDao(Class<T> clazz, KeyExtractor<T, K> keyExtractor, int maximumSize) {
+        this(clazz, keyExtractor, maximumSize, null);
+    }
+
+    /**
+     * Cache bounded by a total weight
+     * @param weigher   Weight of each item, null to count the items
+     */
+    public CacheStoreDao(Class<T> clazz, KeyExtractor<T, K> keyExtractor, long maximumWeight, Weigher<T> weigher) {
+        super(clazz, keyExtractor);
+        this.weigher = weigher;
+        this.policy = new TinyLfuPolicy<>(maximumWeight);
+    }
+
+    /**
+     * Current total weight of the cached items
+     */
+    public long weight() {
+        synchronized (lock) {
+            return policy.weight();
+        }
+    }
+
+    public CacheStats getStats() {
+        synchronized (lock) {
+            return new CacheStats(hitCount, missCount, evictionCount, evictionWeight);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T read(Object key) {
+        final T row = super.read(key);
+        if (row == null) {
+            missCount++;
+        } else {
+            hitCount++;
+            policy.recordAccess((K) key);
+        }
+        return row;
+    }
+
+    @Override
+    protected T put(K key, T item) {
+        final T previous = super.put(key, item);
+        final List<K> evicted = policy.recordWrite(key, weigher == null ? 1 : weigher.weigh(item));
+        for (K evictedKey : evicted) {
+            final T row = super.remove(evictedKey);
+            if (row != null) {
+                evictionCount++;
+                evictionWeight += weigher == null ? 1 : weigher.weigh(row);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    protected T remove(Object key) {
+        final T removed = super.remove(key);
+        if (removed != null) {
+            policy.remove(keyOf(removed));
+        }
+        return removed;
+    }
+
+    @Override
+    protected void clear() {
+        super.clear();
+        policy.clear();
+    }
+}
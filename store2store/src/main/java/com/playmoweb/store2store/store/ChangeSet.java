@@ -0,0 +1,35 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes of a dataset since a change token
+ * - upserts are the items created or modified since the token
+ * - deletedIds are the ids of the items deleted since the token (tombstones)
+ * - token is the opaque token to give to the next getChangesSince call
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class ChangeSet<T> {
+    public final List<T> upserts;
+    public final List<Object> deletedIds;
+    public final String token;
+
+    public ChangeSet(List<T> upserts, List<?> deletedIds, String token) {
+        this.upserts = Collections.unmodifiableList(new ArrayList<>(upserts));
+        this.deletedIds = Collections.unmodifiableList(new ArrayList<Object>(deletedIds));
+        this.token = token;
+    }
+
+    public boolean isEmpty() {
+        return upserts.isEmpty() && deletedIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSet{upserts=" + upserts.size() + ", deletes=" + deletedIds.size() + ", token=" + token + "}";
+    }
+}
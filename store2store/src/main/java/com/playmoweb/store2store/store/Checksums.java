@@ -0,0 +1,44 @@
+package com.playmoweb.store2store.store;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * CRC32 of the records written in buffers
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class Checksums {
+    private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[4096];
+        }
+    };
+
+    private Checksums() {
+    }
+
+    /**
+     * CRC32 of a region of a buffer, the position of the buffer is not changed
+     * @note    A direct or mapped buffer is read through a small per-thread array.
+     */
+    static int crc32(ByteBuffer buffer, int offset, int length) {
+        final CRC32 crc = new CRC32();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + offset, length);
+            return (int) crc.getValue();
+        }
+
+        final byte[] scratch = SCRATCH.get();
+        final ByteBuffer region = buffer.duplicate();
+        region.limit(offset + length).position(offset);
+        while (region.hasRemaining()) {
+            final int chunk = Math.min(scratch.length, region.remaining());
+            region.get(scratch, 0, chunk);
+            crc.update(scratch, 0, chunk);
+        }
+        return (int) crc.getValue();
+    }
+}
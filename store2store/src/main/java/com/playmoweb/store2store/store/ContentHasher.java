@@ -0,0 +1,12 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Hash of the content of an item, used to detect the items that changed between two versions of a dataset
+ * @note    Two versions of an item with the same hash are considered identical
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public interface ContentHasher<T> {
+    long hash(T item);
+}
@@ -0,0 +1,97 @@
+package com.playmoweb.store2store.store;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Threads of the operations of a Store, by tier and by kind of operation
+ * - remote : calls to the dao of the Store
+ * - localReads : reads of the synced store (filtering and sorting of the local tier)
+ * - localWrites : writes of the synced store (write-backs of the dao results, optimistic writes and rollbacks)
+ * A tier without scheduler runs on the thread subscribing to it, as the dao decides.
+ *
+ * Usage :
+ *      ExecutionPolicy policy = ExecutionPolicy.standard();
+ *      ExecutionPolicy custom = ExecutionPolicy.CALLER
+ *              .remote(Schedulers.io())
+ *              .localWrites(Schedulers.from(writers)); // at most as many write-backs as the threads of writers
+ *
+ * @note    The emissions are delivered on the thread of the last tier, use observeOn to get them on a given thread.
+ * @note    The schedulers are not shut down by the stores, their owner does it.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class ExecutionPolicy {
+    /**
+     * Every operation runs on the subscribing thread (default behaviour)
+     */
+    public static final ExecutionPolicy CALLER = new ExecutionPolicy(null, null, null);
+
+    private static final ExecutionPolicy STANDARD = new ExecutionPolicy(Schedulers.io(), Schedulers.computation(),
+            Schedulers.from(Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "store2store-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            })));
+
+    final Scheduler remote;
+    final Scheduler localReads;
+    final Scheduler localWrites;
+
+    private ExecutionPolicy(Scheduler remote, Scheduler localReads, Scheduler localWrites) {
+        this.remote = remote;
+        this.localReads = localReads;
+        this.localWrites = localWrites;
+    }
+
+    /**
+     * I/O threads for the dao, the bounded computation pool for the local reads and a single writer for the local
+     * writes : the local writes are applied in order and never wait behind each other on a lock
+     * @note    The writer thread is shared by every Store using this policy, it is a daemon thread.
+     */
+    public static ExecutionPolicy standard() {
+        return STANDARD;
+    }
+
+    public ExecutionPolicy remote(Scheduler scheduler) {
+        return new ExecutionPolicy(scheduler, localReads, localWrites);
+    }
+
+    public ExecutionPolicy localReads(Scheduler scheduler) {
+        return new ExecutionPolicy(remote, scheduler, localWrites);
+    }
+
+    public ExecutionPolicy localWrites(Scheduler scheduler) {
+        return new ExecutionPolicy(remote, localReads, scheduler);
+    }
+
+    <R> Flowable<R> remote(Flowable<R> call) {
+        return remote == null ? call : call.subscribeOn(remote);
+    }
+
+    <R> Flowable<R> localRead(Flowable<R> call) {
+        return localReads == null ? call : call.subscribeOn(localReads);
+    }
+
+    <R> Flowable<R> localWrite(Flowable<R> call) {
+        return localWrites == null ? call : call.subscribeOn(localWrites);
+    }
+
+    Completable localWrite(Completable call) {
+        return localWrites == null ? call : call.subscribeOn(localWrites);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionPolicy{remote=" + remote + ", localReads=" + localReads + ", localWrites=" + localWrites + "}";
+    }
+}
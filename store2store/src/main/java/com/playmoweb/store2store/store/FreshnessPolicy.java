@@ -0,0 +1,57 @@
+package com.playmoweb.store2store.store;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Freshness rules of the reads of a Store synced with a local store
+ * - maxAge : while the last refresh of a request is younger, only the synced store is read
+ * - staleWhileRevalidate : after maxAge and during this delay, the synced store is emitted and the dao read in
+ *   background to refresh it
+ * - staleIfError : an error of the dao is ignored when the synced store had a result
+ *
+ * Usage :
+ *      FreshnessPolicy policy = FreshnessPolicy.maxAge(5, TimeUnit.MINUTES)
+ *              .staleWhileRevalidate(1, TimeUnit.HOURS)
+ *              .staleIfError();
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class FreshnessPolicy {
+    /**
+     * Always read the dao (default behaviour)
+     */
+    public static final FreshnessPolicy ALWAYS_REFRESH = new FreshnessPolicy(0, 0, false);
+
+    final long maxAgeNanos;
+    final long staleWhileRevalidateNanos;
+    final boolean staleIfError;
+
+    private FreshnessPolicy(long maxAgeNanos, long staleWhileRevalidateNanos, boolean staleIfError) {
+        if (maxAgeNanos < 0 || staleWhileRevalidateNanos < 0) {
+            throw new IllegalArgumentException("A freshness delay can't be negative");
+        }
+        this.maxAgeNanos = maxAgeNanos;
+        this.staleWhileRevalidateNanos = staleWhileRevalidateNanos;
+        this.staleIfError = staleIfError;
+    }
+
+    public static FreshnessPolicy maxAge(long duration, TimeUnit unit) {
+        return new FreshnessPolicy(unit.toNanos(duration), 0, false);
+    }
+
+    public FreshnessPolicy staleWhileRevalidate(long duration, TimeUnit unit) {
+        return new FreshnessPolicy(maxAgeNanos, unit.toNanos(duration), staleIfError);
+    }
+
+    public FreshnessPolicy staleIfError() {
+        return new FreshnessPolicy(maxAgeNanos, staleWhileRevalidateNanos, true);
+    }
+
+    @Override
+    public String toString() {
+        return "FreshnessPolicy{maxAge=" + TimeUnit.NANOSECONDS.toMillis(maxAgeNanos)
+                + "ms, staleWhileRevalidate=" + TimeUnit.NANOSECONDS.toMillis(staleWhileRevalidateNanos)
+                + "ms, staleIfError=" + staleIfError + "}";
+    }
+}
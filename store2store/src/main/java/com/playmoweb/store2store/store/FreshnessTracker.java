@@ -0,0 +1,30 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Time of the last successful refresh of each request (query or entity)
+ * The least recently refreshed requests are forgotten first, a forgotten request is simply read again.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class FreshnessTracker {
+    private static final int MAX_ENTRIES = 1024;
+
+    private final LruMap<QueryKey, Long> refreshes = new LruMap<>(MAX_ENTRIES);
+
+    synchronized void recordRefresh(QueryKey key) {
+        refreshes.put(key, System.nanoTime());
+    }
+
+    /**
+     * @return  Nanoseconds since the last refresh of the request, Long.MAX_VALUE if unknown
+     */
+    synchronized long age(QueryKey key) {
+        final Long refresh = refreshes.get(key);
+        return refresh == null ? Long.MAX_VALUE : System.nanoTime() - refresh;
+    }
+
+    synchronized void clear() {
+        refreshes.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.FieldAccessor;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.ValueComparator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Hash index answering EQUAL filters
+ * The values are normalized as numbers are compared : an int field matches a filter on 1L or 1.0.
+ * NOT_EQUAL is left to the scan, which keeps the insertion order of the rows.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+class HashIndex<K> extends SecondaryIndex<K> {
+    private final HashMap<Object, LinkedHashSet<K>> buckets = new HashMap<>();
+
+    HashIndex(FieldAccessor accessor) {
+        super(accessor);
+    }
+
+    @Override
+    boolean isOrdered() {
+        return false;
+    }
+
+    @Override
+    boolean supports(FilterType type) {
+        return type == FilterType.EQUAL;
+    }
+
+    @Override
+    int estimate(FilterType type, Object value) {
+        final LinkedHashSet<K> bucket = buckets.get(ValueComparator.normalize(value));
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    @Override
+    Iterator<K> lookup(FilterType type, Object value, boolean descending) {
+        final LinkedHashSet<K> bucket = buckets.get(ValueComparator.normalize(value));
+        return bucket == null ? Collections.<K>emptyList().iterator() : bucket.iterator();
+    }
+
+    @Override
+    Iterator<K> scan(boolean descending) {
+        throw new UnsupportedOperationException("A hash index can't be scanned in order");
+    }
+
+    @Override
+    void addToBucket(Object value, K key) {
+        final Object normalized = ValueComparator.normalize(value);
+        LinkedHashSet<K> bucket = buckets.get(normalized);
+        if (bucket == null) {
+            bucket = new LinkedHashSet<>();
+            buckets.put(normalized, bucket);
+        }
+        bucket.add(key);
+    }
+
+    @Override
+    void removeFromBucket(Object value, K key) {
+        final Object normalized = ValueComparator.normalize(value);
+        final LinkedHashSet<K> bucket = buckets.get(normalized);
+        if (bucket != null && bucket.remove(key) && bucket.isEmpty()) {
+            buckets.remove(normalized);
+        }
+    }
+
+    @Override
+    void clearBuckets() {
+        buckets.clear();
+    }
+}
@@ -0,0 +1,167 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics kept in memory, by Store class, operation and tier : a histogram of the durations, a histogram of the
+ * result sizes, and the number of errors and rollbacks
+ * A single instance can be shared by every Store of an application, to compare their latencies.
+ *
+ * Usage :
+ *      HistogramStoreMetrics metrics = new HistogramStoreMetrics();
+ *      store.setMetrics(metrics);
+ *      ...
+ *      metrics.get(MyStore.class, "getAll", StoreMetrics.Tier.REMOTE).durations.percentile(99);
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class HistogramStoreMetrics implements StoreMetrics {
+    private final ConcurrentMap<Key, OperationStats> operations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, AtomicLong> rollbacks = new ConcurrentHashMap<>();
+
+    @Override
+    public void onCall(Class<?> store, String operation, Tier tier, long durationNanos, int resultSize, Throwable error) {
+        final Key key = new Key(store, operation, tier);
+        OperationStats stats = operations.get(key);
+        if (stats == null) {
+            final OperationStats created = new OperationStats(key.toString());
+            stats = operations.putIfAbsent(key, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.durations.record(durationNanos);
+        if (resultSize >= 0) {
+            stats.resultSizes.record(resultSize);
+        }
+        if (error != null) {
+            stats.errors.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onRollback(Class<?> store, String operation) {
+        final Key key = new Key(store, operation, null);
+        AtomicLong count = rollbacks.get(key);
+        if (count == null) {
+            final AtomicLong created = new AtomicLong();
+            count = rollbacks.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * @return  null if the operation was never called
+     */
+    public OperationStats get(Class<?> store, String operation, Tier tier) {
+        return operations.get(new Key(store, operation, tier));
+    }
+
+    public long getRollbackCount(Class<?> store, String operation) {
+        final AtomicLong count = rollbacks.get(new Key(store, operation, null));
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Every operation measured, slowest p99 first
+     */
+    public List<OperationStats> getAll() {
+        final List<OperationStats> all = new ArrayList<>(operations.values());
+        final Map<OperationStats, Long> p99 = new IdentityHashMap<>();
+        for (OperationStats stats : all) {
+            p99.put(stats, stats.durations.percentile(99)); // read once : the histograms keep recording
+        }
+        Collections.sort(all, new Comparator<OperationStats>() {
+            @Override
+            public int compare(OperationStats a, OperationStats b) {
+                return p99.get(b).compareTo(p99.get(a));
+            }
+        });
+        return all;
+    }
+
+    public void clear() {
+        operations.clear();
+        rollbacks.clear();
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("HistogramStoreMetrics{");
+        for (OperationStats stats : getAll()) {
+            builder.append('\n').append(stats);
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Measures of an operation of a Store on a tier
+     */
+    public static final class OperationStats {
+        public final String name;
+        public final Histogram durations = new Histogram();
+        public final Histogram resultSizes = new Histogram();
+        private final AtomicLong errors = new AtomicLong();
+
+        OperationStats(String name) {
+            this.name = name;
+        }
+
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        @Override
+        public String toString() {
+            return name + " : calls=" + durations.count() + ", errors=" + errors.get()
+                    + ", p50=" + TimeUnit.NANOSECONDS.toMicros(durations.percentile(50)) + "us"
+                    + ", p99=" + TimeUnit.NANOSECONDS.toMicros(durations.percentile(99)) + "us"
+                    + ", max=" + TimeUnit.NANOSECONDS.toMicros(durations.max()) + "us"
+                    + ", p99 size=" + resultSizes.percentile(99);
+        }
+    }
+
+    private static final class Key {
+        private final Class<?> store;
+        private final String operation;
+        private final Tier tier;
+
+        Key(Class<?> store, String operation, Tier tier) {
+            this.store = store;
+            this.operation = operation;
+            this.tier = tier;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return store == other.store && operation.equals(other.operation) && tier == other.tier;
+        }
+
+        @Override
+        public int hashCode() {
+            return (store.hashCode() * 31 + operation.hashCode()) * 31 + (tier == null ? 0 : tier.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return store.getName() + "." + operation + (tier == null ? "" : " (" + tier + ")");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.playmoweb.store2store.store;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.Action;
+
+/**
+ * Single flight of identical reads
+ * Concurrent subscribers of the same request share one subscription to the stores : the late ones get the
+ * emissions already received replayed. The shared flow is forgotten as soon as it terminates or is cancelled,
+ * the next request then reads the stores again.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class InFlightRequests {
+    private final ConcurrentHashMap<QueryKey, Flowable<?>> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Share a read with the identical reads in flight
+     */
+    <R> Flowable<R> share(final QueryKey key, final Flowable<R> source) {
+        return Flowable.defer(new Callable<Publisher<R>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Publisher<R> call() throws Exception {
+                final Flowable<R> current = (Flowable<R>) requests.get(key);
+                if (current != null) {
+                    return current;
+                }
+
+                final Flowable<?>[] self = new Flowable<?>[1];
+                final Flowable<R> shared = source
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                requests.remove(key, self[0]);
+                            }
+                        })
+                        .replay()
+                        .refCount();
+                self[0] = shared;
+
+                final Flowable<R> concurrent = (Flowable<R>) requests.putIfAbsent(key, shared);
+                return concurrent != null ? concurrent : shared;
+            }
+        });
+    }
+}
@@ -0,0 +1,502 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.FieldAccessor;
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterPredicate;
+import com.playmoweb.store2store.utils.IndexType;
+import com.playmoweb.store2store.utils.SortType;
+import com.playmoweb.store2store.utils.SortingMode;
+import com.playmoweb.store2store.utils.TopK;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Flowable;
+
+/**
+ * In-memory dao backed by a primary key hash index
+ * Rows are kept in insertion order (an update keeps the position of the row).
+ *
+ * Secondary indexes can be declared with {@link #addIndex(String, IndexType)} : getAll and getOne then walk
+ * only the rows matching the most selective indexed filter, and skip the sort when the index order matches it.
+ *
+ * @note    getById, insertOrUpdate and delete are O(1), the list variants and getByIds are O(m) with m the size of
+ *          the list.
+ * @note    All operations are lazy : nothing is read or written before the subscription.
+ * @warn    Indexed fields of a stored row must not be mutated in place, insert the row again instead.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public class InMemoryStoreDao<T, K> extends StoreDao<T> {
+
+    /**
+     * Class of the stored items
+     */
+    protected final Class<T> clazz;
+
+    /**
+     * Primary key used by the hash index
+     */
+    protected final KeyExtractor<T, K> keyExtractor;
+
+    /**
+     * Lock guarding the rows (and any structure maintained with them by a child class)
+     */
+    protected final Object lock = new Object();
+
+    /**
+     * Primary index, the iteration order is the insertion order
+     */
+    private final LinkedHashMap<K, T> rows = new LinkedHashMap<>();
+
+    /**
+     * Secondary indexes by field name
+     */
+    private final Map<String, SecondaryIndex<K>> indexes = new HashMap<>();
+
+    public InMemoryStoreDao(Class<T> clazz, KeyExtractor<T, K> keyExtractor) {
+        this.clazz = clazz;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Declare a secondary index on a field (or getter) of the model, existing rows are indexed immediately
+     * @note    A field has at most one index, declaring it again replaces the previous one.
+     */
+    public InMemoryStoreDao<T, K> addIndex(String field, IndexType type) {
+        final FieldAccessor accessor = FieldAccessor.of(clazz, field);
+        final SecondaryIndex<K> index = type == IndexType.SORTED
+                ? new SortedIndex<K>(accessor)
+                : new HashIndex<K>(accessor);
+
+        synchronized (lock) {
+            for (Map.Entry<K, T> e : rows.entrySet()) {
+                index.add(e.getKey(), e.getValue());
+            }
+            indexes.put(field, index);
+        }
+        return this;
+    }
+
+    /**
+     * Number of rows currently stored
+     */
+    public int size() {
+        synchronized (lock) {
+            return rows.size();
+        }
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(query(filter, sortingMode, Integer.MAX_VALUE));
+                }
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The limit must be positive");
+        }
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(query(filter, sortingMode, limit));
+                }
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                final List<T> output = new ArrayList<>(items.size());
+                synchronized (lock) {
+                    for (T item : items) {
+                        final T row = read(keyOf(item));
+                        if (row != null) {
+                            output.add(row);
+                        }
+                    }
+                }
+                return Optional.wrap(output);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> getOne(final Filter filter, final SortingMode sortingMode) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    final List<T> result = query(filter, sortingMode, 1);
+                    return Optional.wrap(result.isEmpty() ? null : result.get(0));
+                }
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> getOne(final T item) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(read(keyOf(item)));
+                }
+            }
+        });
+    }
+
+    @Override
+    public <S> Flowable<Optional<T>> getById(final S id) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(read(id));
+                }
+            }
+        });
+    }
+
+    @Override
+    public <S> Flowable<Optional<List<T>>> getByIds(final Collection<S> ids) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                final List<T> output = new ArrayList<>(ids.size());
+                final HashSet<Object> seen = new HashSet<>(ids.size() * 2);
+                synchronized (lock) {
+                    for (S id : ids) {
+                        if (seen.add(id)) {
+                            final T row = read(id);
+                            if (row != null) {
+                                output.add(row);
+                            }
+                        }
+                    }
+                }
+                return Optional.wrap(output);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> insert(final T item) {
+        return insertOrUpdate(item);
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> insert(final List<T> items) {
+        return insertOrUpdate(items);
+    }
+
+    @Override
+    public Flowable<Optional<T>> update(final T item) {
+        return insertOrUpdate(item);
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> update(final List<T> items) {
+        return insertOrUpdate(items);
+    }
+
+    @Override
+    public Flowable<Optional<T>> insertOrUpdate(final T item) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    put(keyOf(item), item);
+                }
+                return Optional.wrap(item);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> insertOrUpdate(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                synchronized (lock) {
+                    for (T item : items) {
+                        put(keyOf(item), item);
+                    }
+                }
+                return Optional.wrap(items);
+            }
+        });
+    }
+
+    /**
+     * Replaced versions are captured by the write itself, without reading the rows first
+     */
+    @Override
+    public Flowable<Optional<List<T>>> insertOrUpdateReturningPrevious(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                final List<T> previous = new ArrayList<>();
+                final Set<K> written = new HashSet<>(items.size() * 2);
+                synchronized (lock) {
+                    for (T item : items) {
+                        final K key = keyOf(item);
+                        final T replaced = put(key, item);
+                        if (written.add(key) && replaced != null) { // a key written twice replaced itself
+                            previous.add(replaced);
+                        }
+                    }
+                }
+                return Optional.wrap(previous);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> insertOrUpdateReturningPrevious(final T item) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(put(keyOf(item), item));
+                }
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Integer> delete(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                int deleted = 0;
+                synchronized (lock) {
+                    for (T item : items) {
+                        if (remove(keyOf(item)) != null) {
+                            deleted++;
+                        }
+                    }
+                }
+                return deleted;
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Integer> delete(final T item) {
+        return Flowable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                synchronized (lock) {
+                    return remove(keyOf(item)) != null ? 1 : 0;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Integer> deleteAll() {
+        return Flowable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                synchronized (lock) {
+                    final int deleted = rows.size();
+                    clear();
+                    return deleted;
+                }
+            }
+        });
+    }
+
+    // STORAGE PRIMITIVES (always called while holding the lock)
+
+    /**
+     * Resolve the rows matching a filter in the right order
+     * The most selective indexed filter entry is used to walk only the matching rows, the compiled filter is
+     * then checked on these rows. Without usable filter, a sorted index on the sorting key is walked to avoid the sort.
+     * With a limit, the scan stops at the first matching rows when the order is already right, otherwise the first
+     * rows are selected in a single pass with a bounded heap.
+     *
+     * @param limit Maximum number of rows returned, Integer.MAX_VALUE for all
+     */
+    protected List<T> query(final Filter filter, final SortingMode sortingMode, final int limit) {
+        final boolean sorted = sortingMode != null && !sortingMode.entries.isEmpty();
+        final AbstractMap.SimpleEntry<String, SortType> firstSort = sorted ? sortingMode.entries.getFirst() : null;
+        final boolean descending = sorted && firstSort.getValue() == SortType.DESCENDING;
+
+        // 1. choose the access path
+        String indexedKey = null;
+        SecondaryIndex<K> index = null;
+        int best = Integer.MAX_VALUE;
+        if (filter != null) {
+            for (int i = 0; i < filter.size(); i++) {
+                final Filter.KeyValuePair<?> pair = filter.pairAt(i);
+                final SecondaryIndex<K> candidate = indexes.get(filter.keyAt(i));
+                if (candidate != null && candidate.supports(pair.filterType)) {
+                    final int estimate = candidate.estimate(pair.filterType, pair.value);
+                    if (estimate < best) {
+                        best = estimate;
+                        index = candidate;
+                        indexedKey = filter.keyAt(i);
+                    }
+                }
+            }
+        }
+
+        final boolean walkInOrder = sorted && sortingMode.entries.size() == 1;
+        Iterator<K> keys = null;
+        boolean ordered = false;
+        if (index != null) {
+            final Filter.KeyValuePair<?> pair = filter.get(indexedKey);
+            keys = index.lookup(pair.filterType, pair.value, descending);
+            ordered = walkInOrder && index.isOrdered() && index.field().equals(firstSort.getKey());
+        } else if (walkInOrder) {
+            final SecondaryIndex<K> sortIndex = indexes.get(firstSort.getKey());
+            if (sortIndex != null && sortIndex.isOrdered()) {
+                keys = sortIndex.scan(descending);
+                ordered = true;
+            }
+        }
+
+        // 2. check the filter on the candidate rows, stop early when the order is already right
+        final FilterPredicate<T> predicate = FilterPredicate.compile(clazz, filter);
+        final Iterator<T> candidates = keys == null ? rows.values().iterator() : new RowIterator(keys);
+        final boolean needsSort = sorted && !ordered;
+        if (needsSort && limit < Integer.MAX_VALUE) {
+            // 3. select the first rows with a bounded heap instead of sorting everything
+            final TopK<T> selection = new TopK<>(sortingMode.comparator(clazz), limit);
+            while (candidates.hasNext()) {
+                final T row = candidates.next();
+                if (predicate.test(row)) {
+                    selection.offer(row);
+                }
+            }
+            return selection.toList();
+        }
+
+        final int expected = index == null ? rows.size() : Math.min(best, rows.size());
+        final List<T> output = new ArrayList<>(needsSort ? expected : Math.min(limit, expected));
+        while ((needsSort || output.size() < limit) && candidates.hasNext()) {
+            final T row = candidates.next();
+            if (predicate.test(row)) {
+                output.add(row);
+            }
+        }
+
+        // 3. sort if the access path did not
+        if (needsSort) {
+            Collections.sort(output, sortingMode.comparator(clazz));
+        }
+        return output;
+    }
+
+    /**
+     * Read a row by its key
+     */
+    protected T read(Object key) {
+        return rows.get(key);
+    }
+
+    /**
+     * Insert or replace a row
+     * @return The previous row with this key or null
+     */
+    protected T put(K key, T item) {
+        for (SecondaryIndex<K> index : indexes.values()) {
+            index.add(key, item);
+        }
+        return rows.put(key, item);
+    }
+
+    /**
+     * Remove a row
+     * @return The removed row or null
+     */
+    @SuppressWarnings("unchecked")
+    protected T remove(Object key) {
+        final T removed = rows.remove(key);
+        if (removed != null) {
+            for (SecondaryIndex<K> index : indexes.values()) {
+                index.remove((K) key);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all rows
+     */
+    protected void clear() {
+        rows.clear();
+        for (SecondaryIndex<K> index : indexes.values()) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Live view on the rows in insertion order
+     */
+    protected Collection<T> rows() {
+        return rows.values();
+    }
+
+    /**
+     * Extract the key of an item
+     */
+    protected K keyOf(T item) {
+        final K key = keyExtractor.getKey(item);
+        if (key == null) {
+            throw new IllegalArgumentException("The key of an item stored in an InMemoryStoreDao can't be null");
+        }
+        return key;
+    }
+
+    /**
+     * Iterate over the rows of a list of keys
+     */
+    private final class RowIterator implements Iterator<T> {
+        private final Iterator<K> keys;
+
+        RowIterator(Iterator<K> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return keys.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return rows.get(keys.next());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Extract the primary key of an item
+ * @note    The key must be stable for the life of the item and usable as a hash key (equals/hashCode)
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public interface KeyExtractor<T, K> {
+    K getKey(T item);
+}
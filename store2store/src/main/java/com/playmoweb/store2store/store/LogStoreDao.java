@@ -0,0 +1,777 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterPredicate;
+import com.playmoweb.store2store.utils.SortingMode;
+import com.playmoweb.store2store.utils.TopK;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Persistent dao backed by an append-only log of memory-mapped segments
+ * Every write appends a record to the active segment, a new segment is started when it is full. The items are not
+ * kept in the heap : an index maps each key to the position of its last record, read and decoded on demand.
+ * getById and getByIds read only the records of their keys, getAll and getOne decode every live record.
+ *
+ * The writes are durable when their flowable emits : the segment is synced to the disk once for all the writes
+ * appended since the previous sync (group commit), a list is synced once. When more than half of the sealed
+ * segments is made of overwritten or deleted records, the live records are copied to the active segment in
+ * background and the sealed segments are deleted (compaction).
+ *
+ * Record layout : size of op and payload (int) | crc32 of op and payload (int) | op (byte) | payload
+ * The log is replayed when the dao is opened, a torn record at the end of the log (crash during a write) is dropped.
+ *
+ * @note    All operations are lazy : nothing is read or written before the subscription.
+ * @note    A log must be opened by a single dao, and a single process.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public class LogStoreDao<T, K> extends StoreDao<T> {
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final byte UPSERT = 0;
+    private static final byte DELETE = 1;
+    private static final byte CLEAR = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final String EXTENSION = ".log";
+    private static final int COMPACTION_CHUNK = 256;
+
+    protected final Class<T> clazz;
+    protected final KeyExtractor<T, K> keyExtractor;
+    private final RecordCodec<T> codec;
+    private final File directory;
+    private final String name;
+    private final int segmentSize;
+    private final Scheduler compactionScheduler;
+
+    private final Object lock = new Object();
+
+    /**
+     * Held during a whole compaction, a single compaction runs at once
+     */
+    private final Object compactionLock = new Object();
+
+    /**
+     * Position of the last record of each live key, in insertion order
+     */
+    private final LinkedHashMap<K, Long> index = new LinkedHashMap<>();
+
+    /**
+     * Segments by increasing id, the last one is the active segment
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private long appended = 0;
+    private boolean compactionScheduled = false;
+
+    /**
+     * Group commit : number of writes known to be on the disk
+     */
+    private final Object syncLock = new Object();
+    private long synced = 0;
+
+    public LogStoreDao(Class<T> clazz, KeyExtractor<T, K> keyExtractor, RecordCodec<T> codec, File directory, String name) throws IOException {
+        this(clazz, keyExtractor, codec, directory, name, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public LogStoreDao(Class<T> clazz, KeyExtractor<T, K> keyExtractor, RecordCodec<T> codec, File directory, String name, int segmentSize) throws IOException {
+        this(clazz, keyExtractor, codec, directory, name, segmentSize, Schedulers.io());
+    }
+
+    /**
+     * Open (or create) the log stored in a directory, replaying its segments
+     * @param name                  Name of the segment files in the directory
+     * @param segmentSize           Size of a segment, a record can't be larger
+     * @param compactionScheduler   Scheduler of the background compactions
+     */
+    public LogStoreDao(Class<T> clazz, KeyExtractor<T, K> keyExtractor, RecordCodec<T> codec, File directory, String name, int segmentSize,
+                       Scheduler compactionScheduler) throws IOException {
+        if (segmentSize <= HEADER_SIZE + 1) {
+            throw new IllegalArgumentException("The size of a segment is too small");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the directory " + directory);
+        }
+        this.clazz = clazz;
+        this.keyExtractor = keyExtractor;
+        this.codec = codec;
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.compactionScheduler = compactionScheduler;
+
+        synchronized (lock) {
+            for (int id : segmentIds()) {
+                replay(openSegment(id));
+            }
+            if (segments.isEmpty()) {
+                openSegment(0);
+            }
+        }
+    }
+
+    /**
+     * Number of live items
+     */
+    public int size() {
+        synchronized (lock) {
+            return index.size();
+        }
+    }
+
+    /**
+     * Number of segment files
+     */
+    public int segmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (lock) {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+        }
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                return Optional.wrap(query(filter, sortingMode, Integer.MAX_VALUE));
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The limit must be positive");
+        }
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                return Optional.wrap(query(filter, sortingMode, limit));
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                final List<T> output = new ArrayList<>(items.size());
+                synchronized (lock) {
+                    for (T item : items) {
+                        final T row = read(keyOf(item));
+                        if (row != null) {
+                            output.add(row);
+                        }
+                    }
+                }
+                return Optional.wrap(output);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> getOne(final Filter filter, final SortingMode sortingMode) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                final List<T> result = query(filter, sortingMode, 1);
+                return Optional.wrap(result.isEmpty() ? null : result.get(0));
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> getOne(final T item) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(read(keyOf(item)));
+                }
+            }
+        });
+    }
+
+    @Override
+    public <S> Flowable<Optional<T>> getById(final S id) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                synchronized (lock) {
+                    return Optional.wrap(read(id));
+                }
+            }
+        });
+    }
+
+    @Override
+    public <S> Flowable<Optional<List<T>>> getByIds(final Collection<S> ids) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                final List<T> output = new ArrayList<>(ids.size());
+                final HashSet<Object> seen = new HashSet<>(ids.size() * 2);
+                synchronized (lock) {
+                    for (S id : ids) {
+                        if (seen.add(id)) {
+                            final T row = read(id);
+                            if (row != null) {
+                                output.add(row);
+                            }
+                        }
+                    }
+                }
+                return Optional.wrap(output);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<T>> insert(final T item) {
+        return insertOrUpdate(item);
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> insert(final List<T> items) {
+        return insertOrUpdate(items);
+    }
+
+    @Override
+    public Flowable<Optional<T>> update(final T item) {
+        return insertOrUpdate(item);
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> update(final List<T> items) {
+        return insertOrUpdate(items);
+    }
+
+    @Override
+    public Flowable<Optional<T>> insertOrUpdate(final T item) {
+        return Flowable.fromCallable(new Callable<Optional<T>>() {
+            @Override
+            public Optional<T> call() throws Exception {
+                write(UPSERT, Collections.singletonList(item));
+                return Optional.wrap(item);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Optional<List<T>>> insertOrUpdate(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> call() throws Exception {
+                write(UPSERT, items);
+                return Optional.wrap(items);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Integer> delete(final List<T> items) {
+        return Flowable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return write(DELETE, items);
+            }
+        });
+    }
+
+    @Override
+    public Flowable<Integer> delete(final T item) {
+        return Flowable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return write(DELETE, Collections.singletonList(item));
+            }
+        });
+    }
+
+    /**
+     * A single clear record is written, the segments before it are deleted
+     */
+    @Override
+    public Flowable<Integer> deleteAll() {
+        return Flowable.fromCallable(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                final int deleted;
+                final long sequence;
+                synchronized (lock) {
+                    deleted = index.size();
+                    index.clear();
+                    append(CLEAR, null, 0);
+                    sequence = ++appended;
+
+                    final Segment active = activeSegment();
+                    active.liveBytes = 0;
+                    active.force(); // the clear record is on the disk before the segments it hides are deleted
+                    for (Iterator<Segment> it = segments.iterator(); it.hasNext(); ) {
+                        final Segment segment = it.next();
+                        if (segment != active) {
+                            segment.delete();
+                            it.remove();
+                        }
+                    }
+                }
+                commit(sequence);
+                return deleted;
+            }
+        });
+    }
+
+    /**
+     * Copy the live records of the sealed segments to the active segment, then delete the sealed segments
+     * The records are copied by chunks of COMPACTION_CHUNK, the reads and writes run between the chunks.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            final List<Segment> sealed;
+            final List<K> keys = new ArrayList<>();
+            synchronized (lock) {
+                if (segments.size() < 2) {
+                    return; // nothing sealed, or closed
+                }
+                sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+                for (Map.Entry<K, Long> e : index.entrySet()) {
+                    if (sealed.contains(segmentOf(e.getValue()))) {
+                        keys.add(e.getKey());
+                    }
+                }
+            }
+
+            for (int start = 0; start < keys.size(); start += COMPACTION_CHUNK) {
+                synchronized (lock) {
+                    if (segments.isEmpty()) {
+                        return; // closed
+                    }
+                    for (K key : keys.subList(start, Math.min(keys.size(), start + COMPACTION_CHUNK))) {
+                        final Long position = index.get(key);
+                        if (position == null) {
+                            continue; // deleted since
+                        }
+                        final Segment segment = segmentOf(position);
+                        if (!sealed.contains(segment)) {
+                            continue; // written again since
+                        }
+                        final ByteBuffer record = segment.record(offsetOf(position));
+                        final int length = record.remaining();
+                        segment.liveBytes -= length;
+                        index.put(key, copy(record)); // neither decoded nor encoded again
+                        activeSegment().liveBytes += length;
+                    }
+                }
+            }
+
+            final long sequence;
+            synchronized (lock) {
+                if (segments.isEmpty()) {
+                    return;
+                }
+                sequence = ++appended;
+                activeSegment().force(); // the copies are on the disk before the originals are deleted
+
+                for (Segment segment : sealed) {
+                    if (segments.remove(segment)) { // not deleted by a deleteAll
+                        segment.delete(); // by increasing id, a tombstone never outlives the records it hides
+                    }
+                }
+            }
+            commit(sequence);
+        }
+    }
+
+    // STORAGE PRIMITIVES
+
+    /**
+     * Append the records of a write then sync them (group commit)
+     * The index is updated once every record is appended : a write that fails is not visible, even partially.
+     * @return  Number of items that existed
+     */
+    private int write(byte op, List<T> items) throws IOException {
+        final List<K> keys = new ArrayList<>(items.size());
+        final int[] payloadSizes = new int[items.size()];
+        for (int i = 0; i < payloadSizes.length; i++) {
+            keys.add(keyOf(items.get(i)));
+            payloadSizes[i] = codec.encodedSize(items.get(i));
+            checkRecordSize(HEADER_SIZE + 1 + payloadSizes[i]);
+        }
+
+        int existing = 0;
+        final long sequence;
+        synchronized (lock) {
+            final Segment first = activeSegment();
+            final int start = first.position;
+            final long[] positions = new long[items.size()];
+            try {
+                for (int i = 0; i < positions.length; i++) {
+                    positions[i] = append(op, items.get(i), payloadSizes[i]);
+                }
+            } catch (IOException | RuntimeException e) {
+                truncate(first, start);
+                throw e;
+            }
+
+            for (int i = 0; i < positions.length; i++) {
+                final Long previous = op == DELETE ? index.remove(keys.get(i)) : index.put(keys.get(i), positions[i]);
+                if (previous != null) {
+                    existing++;
+                    final Segment segment = segmentOf(previous);
+                    segment.liveBytes -= segment.record(offsetOf(previous)).remaining();
+                }
+                if (op == UPSERT) {
+                    segmentOf(positions[i]).liveBytes += HEADER_SIZE + 1 + payloadSizes[i];
+                }
+            }
+            sequence = ++appended;
+            scheduleCompactionIfNeeded();
+        }
+        commit(sequence);
+        return existing;
+    }
+
+    /**
+     * Append a record to the active segment, the item is encoded in place in the mapped segment
+     * @return  Position of the record
+     */
+    private long append(byte op, T item, int payloadSize) throws IOException {
+        final int length = HEADER_SIZE + 1 + payloadSize;
+        final Segment active = reserve(length);
+        final int offset = active.position;
+        final ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(offset + HEADER_SIZE);
+        buffer.put(op);
+        if (item != null) {
+            codec.encode(item, buffer);
+        }
+        if (buffer.position() != offset + length) {
+            throw new IllegalStateException("The codec wrote " + (buffer.position() - offset - HEADER_SIZE - 1) + " bytes instead of " + payloadSize);
+        }
+        buffer.putInt(offset, 1 + payloadSize).putInt(offset + 4, Checksums.crc32(buffer, offset + HEADER_SIZE, 1 + payloadSize));
+        active.position += length;
+        return ((long) active.id << 32) | offset;
+    }
+
+    /**
+     * Append a copy of a record (header included) to the active segment
+     * @return  Position of the copy
+     */
+    private long copy(ByteBuffer record) throws IOException {
+        final Segment active = reserve(record.remaining());
+        final int offset = active.position;
+        final ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(offset);
+        active.position += record.remaining();
+        buffer.put(record);
+        return ((long) active.id << 32) | offset;
+    }
+
+    /**
+     * Give the segment where a record must be appended, a new segment is started if the active one is full
+     */
+    private Segment reserve(int length) throws IOException {
+        checkRecordSize(length);
+        Segment active = activeSegment();
+        if (active.position + length > active.capacity()) {
+            active.force(); // the sealed segment is never synced again
+            active = openSegment(active.id + 1);
+        }
+        return active;
+    }
+
+    /**
+     * Erase the records appended after a position, so that they are not replayed
+     */
+    private void truncate(Segment segment, int position) throws IOException {
+        while (activeSegment() != segment) {
+            segments.remove(segments.size() - 1).delete();
+        }
+        for (int i = position; i < segment.position; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.position = position;
+        segment.force();
+    }
+
+    private void checkRecordSize(int length) {
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("A record of " + length + " bytes can't fit in a segment of " + segmentSize + " bytes");
+        }
+    }
+
+    /**
+     * Make the writes up to a sequence durable, a single sync covers every write appended before it
+     */
+    private void commit(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (synced >= sequence) {
+                return; // synced by a concurrent writer
+            }
+            final long target;
+            final Segment active;
+            synchronized (lock) {
+                target = appended;
+                active = activeSegment();
+            }
+            active.force();
+            synced = target;
+        }
+    }
+
+    /**
+     * Read and decode the last record of a key, null if the key is not live
+     */
+    private T read(Object key) {
+        final Long position = index.get(key);
+        if (position == null) {
+            return null;
+        }
+        final ByteBuffer record = segmentOf(position).record(offsetOf(position));
+        record.position(record.position() + HEADER_SIZE + 1);
+        return codec.decode(record); // straight from the mapped segment
+    }
+
+    private List<T> query(final Filter filter, final SortingMode sortingMode, final int limit) {
+        final FilterPredicate<T> predicate = FilterPredicate.compile(clazz, filter);
+        final boolean sorted = sortingMode != null && !sortingMode.entries.isEmpty();
+        final TopK<T> selection = sorted && limit < Integer.MAX_VALUE ? new TopK<>(sortingMode.comparator(clazz), limit) : null;
+        final List<T> output = new ArrayList<>();
+
+        synchronized (lock) {
+            for (K key : index.keySet()) {
+                if (!sorted && output.size() >= limit) {
+                    break;
+                }
+                final T row = read(key);
+                if (!predicate.test(row)) {
+                    continue;
+                }
+                if (selection != null) {
+                    selection.offer(row);
+                } else {
+                    output.add(row);
+                }
+            }
+        }
+
+        if (selection != null) {
+            return selection.toList();
+        }
+        if (sorted) {
+            Collections.sort(output, sortingMode.comparator(clazz));
+        }
+        return output;
+    }
+
+    /**
+     * Rebuild the index from the records of a segment, the write position is set after its last valid record
+     */
+    private void replay(Segment segment) {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset + HEADER_SIZE + 1 <= buffer.capacity()) {
+            final int size = buffer.getInt(offset);
+            if (size <= 0 || offset + HEADER_SIZE + size > buffer.capacity()) {
+                break;
+            }
+            if (Checksums.crc32(buffer, offset + HEADER_SIZE, size) != buffer.getInt(offset + 4)) {
+                break;
+            }
+            final byte op = buffer.get(offset + HEADER_SIZE);
+
+            final long position = ((long) segment.id << 32) | offset;
+            if (op == CLEAR) {
+                index.clear();
+                for (Segment previous : segments) {
+                    previous.liveBytes = 0;
+                }
+            } else {
+                final ByteBuffer payload = segment.record(offset);
+                payload.position(offset + HEADER_SIZE + 1);
+                final K key = keyOf(codec.decode(payload));
+                final Long previous = op == DELETE ? index.remove(key) : index.put(key, position);
+                if (previous != null) {
+                    segmentOf(previous).liveBytes -= HEADER_SIZE + segmentOf(previous).buffer.getInt(offsetOf(previous));
+                }
+                if (op == UPSERT) {
+                    segment.liveBytes += HEADER_SIZE + size;
+                }
+            }
+            offset += HEADER_SIZE + size;
+        }
+
+        if (offset + 4 <= buffer.capacity() && buffer.getInt(offset) != 0) {
+            // a torn record is erased, the next records are written in its place
+            for (int i = offset; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        segment.position = offset;
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        long sealedBytes = 0;
+        long liveBytes = 0;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            sealedBytes += segments.get(i).position;
+            liveBytes += segments.get(i).liveBytes;
+        }
+        if (compactionScheduled || sealedBytes == 0 || liveBytes * 2 > sealedBytes) {
+            return;
+        }
+
+        compactionScheduled = true;
+        compactionScheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    compactionScheduled = false;
+                }
+                try {
+                    compact();
+                } catch (IOException ignored) {
+                    // retried after the next write, the log stays readable
+                }
+            }
+        });
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        final Segment segment = new Segment(id, new File(directory, name + "." + id + EXTENSION), segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private Segment segmentOf(long position) {
+        final int id = (int) (position >>> 32);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (segments.get(i).id == id) {
+                return segments.get(i);
+            }
+        }
+        throw new IllegalStateException("Unknown segment " + id);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Ids of the segment files of this log, in increasing order
+     */
+    private List<Integer> segmentIds() {
+        final List<Integer> ids = new ArrayList<>();
+        final String[] files = directory.list();
+        if (files != null) {
+            for (String file : files) {
+                if (file.startsWith(name + ".") && file.endsWith(EXTENSION)) {
+                    try {
+                        ids.add(Integer.parseInt(file.substring(name.length() + 1, file.length() - EXTENSION.length())));
+                    } catch (NumberFormatException ignored) {
+                        // not a segment of this log
+                    }
+                }
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private K keyOf(T item) {
+        final K key = keyExtractor.getKey(item);
+        if (key == null) {
+            throw new IllegalArgumentException("The key of an item stored in a LogStoreDao can't be null");
+        }
+        return key;
+    }
+
+    /**
+     * A segment file mapped in memory
+     */
+    private static final class Segment {
+        final int id;
+        final File file;
+        final RandomAccessFile access;
+        final MappedByteBuffer buffer;
+
+        /**
+         * Write position and size of the live records
+         */
+        int position = 0;
+        long liveBytes = 0;
+
+        Segment(int id, File file, int size) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.access = new RandomAccessFile(file, "rw");
+            final long length = Math.max(access.length(), size);
+            if (access.length() < length) {
+                access.setLength(length);
+            }
+            this.buffer = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * View on a record, header included
+         */
+        ByteBuffer record(int offset) {
+            final ByteBuffer record = buffer.duplicate();
+            record.position(offset);
+            record.limit(offset + HEADER_SIZE + buffer.getInt(offset));
+            return record;
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        void close() throws IOException {
+            access.close();
+        }
+
+        void delete() throws IOException {
+            close();
+            if (!file.delete()) {
+                throw new IOException("Can't delete the segment " + file);
+            }
+        }
+    }
+}
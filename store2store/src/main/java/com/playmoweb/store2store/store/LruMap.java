@@ -0,0 +1,26 @@
+package com.playmoweb.store2store.store;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Map in access order keeping at most maxEntries entries, the least recently used entry is removed first
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class LruMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxEntries;
+
+    LruMap(int maxEntries) {
+        super(16, 0.75f, true);
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxEntries;
+    }
+}
@@ -0,0 +1,344 @@
+package com.playmoweb.store2store.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Durable journal of the writes waiting to be sent to a dao
+ * The writes are appended to a file and synced to the disk before being acknowledged. The position of the last
+ * delivered record (the checkpoint) is kept in a second file : after a restart the records following it are
+ * delivered again, so each write reaches the dao at least once. The journal is truncated once every record is
+ * delivered, and rewritten without its delivered records once they are most of a large journal.
+ *
+ * Record layout : size of op and payload (int) | crc32 of op and payload (int) | op (byte) | payload
+ * The op is the kind of write (insert, update, upsert or delete), each reaches the dao as it was made.
+ * A torn record at the end of the journal (crash during an append) is dropped when the outbox is opened.
+ *
+ * @note    An outbox must be used by a single StoreService, and a single process.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class Outbox<T> {
+    private static final byte UPSERT = 0;
+    private static final byte DELETE = 1;
+    private static final byte INSERT = 2;
+    private static final byte UPDATE = 3;
+    private static final int HEADER_SIZE = 8;
+    private static final long COMPACTION_THRESHOLD = 1 << 20;
+
+    private final File journalFile;
+    private final File checkpointFile;
+    private final RecordCodec<T> codec;
+    private final long compactionThreshold;
+    private RandomAccessFile journal;
+
+    /**
+     * Offset of the first record not delivered
+     */
+    private long checkpoint;
+
+    /**
+     * Offset following the last record appended, the journal is longer only after a failed append
+     */
+    private long end;
+    private int size;
+
+    /**
+     * Open (or create) the outbox stored in a directory
+     * @param name  Name of the files of the outbox in the directory
+     */
+    public Outbox(File directory, String name, RecordCodec<T> codec) throws IOException {
+        this(directory, name, codec, COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param compactionThreshold   Size of the delivered records from which the journal can be rewritten (bytes)
+     */
+    Outbox(File directory, String name, RecordCodec<T> codec, long compactionThreshold) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create the directory " + directory);
+        }
+        this.journalFile = new File(directory, name + ".outbox");
+        this.checkpointFile = new File(directory, name + ".checkpoint");
+        this.codec = codec;
+        this.compactionThreshold = compactionThreshold;
+        this.journal = new RandomAccessFile(journalFile, "rw");
+        this.checkpoint = Math.min(readCheckpoint(), journal.length());
+        recover();
+    }
+
+    /**
+     * Number of records not delivered yet
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Append writes to the journal, they are on the disk when this method returns
+     */
+    synchronized void append(WriteBatch<T> writes) throws IOException {
+        int length = 0;
+        for (T item : writes.items()) {
+            length += HEADER_SIZE + 1 + codec.encodedSize(item);
+        }
+
+        final ByteBuffer records = ByteBuffer.allocate(length);
+        putRecords(records, INSERT, writes.inserts);
+        putRecords(records, UPDATE, writes.updates);
+        putRecords(records, UPSERT, writes.upserts);
+        putRecords(records, DELETE, writes.deletes);
+
+        if (journal.length() != end) {
+            journal.setLength(end); // the bytes of a failed append whose truncation failed
+        }
+        journal.seek(end);
+        try {
+            journal.write(records.array());
+            journal.getFD().sync(); // one sync for the whole group
+        } catch (IOException e) {
+            // a partial or unsynced write is dropped : the next appends follow the last good record, and a write
+            // reported as failed is not delivered after a restart
+            try {
+                journal.setLength(end);
+            } catch (IOException ignored) {
+                // retried by the next append
+            }
+            throw e;
+        }
+        end += length;
+        size += writes.items().size();
+    }
+
+    private void putRecords(ByteBuffer records, byte op, List<T> items) {
+        for (T item : items) {
+            putRecord(records, op, item);
+        }
+    }
+
+    /**
+     * Encode a record in place : the header is filled once the payload is written
+     */
+    private void putRecord(ByteBuffer records, byte op, T item) {
+        final int start = records.position();
+        records.position(start + HEADER_SIZE);
+        records.put(op);
+        codec.encode(item, records);
+        final int recordSize = records.position() - start - HEADER_SIZE;
+        records.putInt(start, recordSize).putInt(start + 4, Checksums.crc32(records, start + HEADER_SIZE, recordSize));
+    }
+
+    /**
+     * Read the next records to deliver, collapsed by key : the last write of a key wins
+     * A key keeps the kind of its first write (an insert followed by an update is an insert), except that a delete
+     * always wins and a write following a delete becomes an upsert.
+     * @return  null if there is nothing to deliver
+     */
+    synchronized Pending<T> next(int maxRecords, KeyExtractor<T, ?> keyExtractor) throws IOException {
+        if (size == 0) {
+            return null;
+        }
+
+        final Map<Object, Write<T>> writes = new LinkedHashMap<>();
+        long position = checkpoint;
+        int records = 0;
+        journal.seek(position);
+        while (records < maxRecords && records < size) {
+            final int length = journal.readInt();
+            journal.readInt(); // checked when the outbox was opened
+            final byte op = journal.readByte();
+            final byte[] payload = new byte[length - 1];
+            journal.readFully(payload);
+
+            final T item = codec.decode(ByteBuffer.wrap(payload));
+            final Object key = keyExtractor.getKey(item);
+            final Write<T> previous = writes.get(key);
+            if (previous == null) {
+                writes.put(key, new Write<>(op, item));
+            } else {
+                if (op == DELETE || previous.op == DELETE) {
+                    previous.op = op == DELETE ? DELETE : UPSERT;
+                }
+                previous.item = item;
+            }
+            position += HEADER_SIZE + length;
+            records++;
+        }
+
+        final List<T> inserts = new ArrayList<>();
+        final List<T> updates = new ArrayList<>();
+        final List<T> upserts = new ArrayList<>();
+        final List<T> deletes = new ArrayList<>();
+        for (Write<T> write : writes.values()) {
+            switch (write.op) {
+                case INSERT:
+                    inserts.add(write.item);
+                    break;
+                case UPDATE:
+                    updates.add(write.item);
+                    break;
+                case DELETE:
+                    deletes.add(write.item);
+                    break;
+                default:
+                    upserts.add(write.item);
+                    break;
+            }
+        }
+        return new Pending<>(new WriteBatch<>(inserts, updates, upserts, deletes), position, records);
+    }
+
+    /**
+     * Mark records as delivered
+     */
+    synchronized void acknowledge(Pending<T> delivered) throws IOException {
+        size -= delivered.records;
+        checkpoint = delivered.end;
+        if (checkpoint == end) {
+            journal.setLength(0); // everything is delivered
+            checkpoint = 0;
+            end = 0;
+        } else if (checkpoint >= compactionThreshold && checkpoint >= end - checkpoint) {
+            compact();
+            return;
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Rewrite the journal without its delivered records
+     * The checkpoint is reset before the new journal replaces the old one : a crash in between delivers the old
+     * journal again from its start, at least once is kept.
+     */
+    private void compact() throws IOException {
+        final long delivered = checkpoint;
+        final File compacted = new File(journalFile.getPath() + ".tmp");
+        final RandomAccessFile copy = new RandomAccessFile(compacted, "rw");
+        try {
+            copy.setLength(0);
+            final byte[] buffer = new byte[8192];
+            journal.seek(delivered);
+            long remaining = end - delivered;
+            while (remaining > 0) {
+                final int read = journal.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("The journal " + journalFile + " is shorter than its records");
+                }
+                copy.write(buffer, 0, read);
+                remaining -= read;
+            }
+            copy.getFD().sync();
+        } finally {
+            copy.close();
+        }
+
+        checkpoint = 0;
+        writeCheckpoint();
+        journal.close();
+        final boolean replaced = compacted.renameTo(journalFile);
+        journal = new RandomAccessFile(journalFile, "rw");
+        if (replaced) {
+            end -= delivered;
+        } else {
+            checkpoint = delivered; // the old journal is kept
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Drop a torn record at the end of the journal and count the records to deliver
+     */
+    private void recover() throws IOException {
+        final long length = journal.length();
+        final CRC32 crc = new CRC32();
+        long position = checkpoint;
+        journal.seek(position);
+        while (position + HEADER_SIZE + 1 <= length) {
+            final int recordSize = journal.readInt();
+            final int checksum = journal.readInt();
+            if (recordSize <= 0 || position + HEADER_SIZE + recordSize > length) {
+                break;
+            }
+            final byte[] record = new byte[recordSize];
+            journal.readFully(record);
+            crc.reset();
+            crc.update(record);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            position += HEADER_SIZE + recordSize;
+            size++;
+        }
+        if (position != length) {
+            journal.setLength(position);
+        }
+        end = position;
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!checkpointFile.exists()) {
+            return 0;
+        }
+        final RandomAccessFile file = new RandomAccessFile(checkpointFile, "r");
+        try {
+            return file.length() < 8 ? 0 : file.readLong();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Replace the checkpoint file atomically
+     */
+    private void writeCheckpoint() throws IOException {
+        final File temporary = new File(checkpointFile.getPath() + ".tmp");
+        final RandomAccessFile file = new RandomAccessFile(temporary, "rw");
+        try {
+            file.setLength(0);
+            file.writeLong(checkpoint);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        if (!temporary.renameTo(checkpointFile)) {
+            throw new IOException("Can't write the checkpoint " + checkpointFile);
+        }
+    }
+
+    private static final class Write<T> {
+        byte op;
+        T item;
+
+        Write(byte op, T item) {
+            this.op = op;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Records read from the journal, waiting for their acknowledgement
+     */
+    static final class Pending<T> {
+        final WriteBatch<T> batch;
+        final long end;
+        final int records;
+
+        Pending(WriteBatch<T> batch, long end, int records) {
+            this.batch = batch;
+            this.end = end;
+            this.records = records;
+        }
+    }
+}
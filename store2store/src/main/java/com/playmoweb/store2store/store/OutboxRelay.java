@@ -0,0 +1,239 @@
+package com.playmoweb.store2store.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Background delivery of an outbox to a dao
+ * The records are read in order from the checkpoint, collapsed by key and sent as a single batch with applyBatch.
+ * The checkpoint moves forward only when the dao succeeded, a failed batch is sent again after a growing delay.
+ * Only one batch is in flight at a time, so the writes of a key reach the dao in order.
+ * The keys of the records not delivered yet are tracked : the version of these items in the synced store is newer
+ * than the version of the dao.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class OutboxRelay<T> {
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+
+    private final Outbox<T> outbox;
+    private final StoreDao<T> dao;
+    private final KeyExtractor<T, ?> keyExtractor;
+    private final long window;
+    private final TimeUnit unit;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+
+    /**
+     * Held while the journal is appended or acknowledged, so that the sequence numbers follow the journal
+     */
+    private final Object journalLock = new Object();
+
+    /**
+     * Keys with records not delivered yet, with the sequence number of their last record, in order of last record
+     */
+    private final LinkedHashMap<Object, Long> pendingKeys = new LinkedHashMap<>();
+    private long appended = 0;
+    private long acknowledged = 0;
+
+    private boolean drainScheduled = false;
+    private boolean draining = false;
+    private int failures = 0;
+
+    OutboxRelay(Outbox<T> outbox, StoreDao<T> dao, KeyExtractor<T, ?> keyExtractor, long window, TimeUnit unit, int maxBatchSize, Scheduler scheduler) {
+        if (window < 0) {
+            throw new IllegalArgumentException("The write window can't be negative");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of a batch must be positive");
+        }
+        this.outbox = outbox;
+        this.dao = dao;
+        this.keyExtractor = keyExtractor;
+        this.window = window;
+        this.unit = unit;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+
+        final int left = outbox.size(); // records of a previous process
+        if (left > 0) {
+            final Outbox.Pending<T> pending;
+            try {
+                pending = outbox.next(left, keyExtractor);
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't read the outbox", e);
+            }
+            appended = left;
+            for (T item : pending.batch.items()) {
+                pendingKeys.put(keyExtractor.getKey(item), appended);
+            }
+        }
+    }
+
+    /**
+     * Append writes to the outbox, they are delivered after the write window
+     */
+    Completable submit(final WriteBatch<T> writes) {
+        return Completable.fromAction(new Action() {
+            @Override
+            public void run() throws Exception {
+                synchronized (journalLock) {
+                    outbox.append(writes);
+                    final List<T> items = writes.items();
+                    synchronized (OutboxRelay.this) {
+                        appended += items.size();
+                        for (T item : items) {
+                            final Object key = keyExtractor.getKey(item);
+                            pendingKeys.remove(key); // moved after the older records
+                            pendingKeys.put(key, appended);
+                        }
+                    }
+                }
+                schedule(window, unit);
+            }
+        });
+    }
+
+    synchronized boolean hasPendingWrites() {
+        return !pendingKeys.isEmpty();
+    }
+
+    /**
+     * Whether a write of this key waits in the outbox
+     */
+    synchronized boolean isPending(Object key) {
+        return pendingKeys.containsKey(key);
+    }
+
+    /**
+     * Items without a write waiting in the outbox
+     */
+    synchronized List<T> withoutPendingWrites(List<T> items) {
+        if (pendingKeys.isEmpty()) {
+            return items;
+        }
+        final List<T> fresh = new ArrayList<>(items.size());
+        for (T item : items) {
+            if (!pendingKeys.containsKey(keyExtractor.getKey(item))) {
+                fresh.add(item);
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Deliver the pending records now
+     */
+    void flush() {
+        schedule(0, unit);
+    }
+
+    private void schedule(long delay, TimeUnit delayUnit) {
+        synchronized (this) {
+            if (drainScheduled) {
+                return;
+            }
+            drainScheduled = true;
+        }
+        scheduler.scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, delay, delayUnit);
+    }
+
+    private void drain() {
+        synchronized (this) {
+            drainScheduled = false;
+            if (draining) {
+                return; // scheduled again when the batch in flight terminates
+            }
+            draining = true;
+        }
+
+        final Outbox.Pending<T> pending;
+        try {
+            pending = outbox.next(maxBatchSize, keyExtractor);
+        } catch (Throwable throwable) {
+            retry();
+            return;
+        }
+        if (pending == null) {
+            synchronized (this) {
+                draining = false;
+            }
+            return;
+        }
+
+        try {
+            dao.applyBatch(pending.batch).subscribe(
+                    new Consumer<WriteBatch<T>>() {
+                        @Override
+                        public void accept(WriteBatch<T> applied) throws Exception {
+                        }
+                    },
+                    new Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable throwable) throws Exception {
+                            retry();
+                        }
+                    },
+                    new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            delivered(pending);
+                        }
+                    }
+            );
+        } catch (Throwable throwable) {
+            retry();
+        }
+    }
+
+    private void delivered(Outbox.Pending<T> pending) {
+        try {
+            synchronized (journalLock) {
+                outbox.acknowledge(pending);
+                synchronized (this) {
+                    acknowledged += pending.records;
+                    final Iterator<Map.Entry<Object, Long>> keys = pendingKeys.entrySet().iterator();
+                    while (keys.hasNext() && keys.next().getValue() <= acknowledged) {
+                        keys.remove();
+                    }
+                }
+            }
+        } catch (Throwable throwable) {
+            retry(); // delivered again, at least once
+            return;
+        }
+        synchronized (this) {
+            draining = false;
+            failures = 0;
+        }
+        if (outbox.size() > 0) {
+            schedule(0, unit);
+        }
+    }
+
+    private void retry() {
+        final long delay;
+        synchronized (this) {
+            draining = false;
+            delay = Math.min(MAX_RETRY_DELAY_MS, 1000L << Math.min(failures, 6));
+            failures++;
+        }
+        schedule(delay, TimeUnit.MILLISECONDS);
+    }
+}
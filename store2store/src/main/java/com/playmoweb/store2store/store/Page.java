@@ -0,0 +1,36 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A page of an ordering with the cursor of the next page
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class Page<T> {
+    public final List<T> items;
+
+    /**
+     * Cursor after the last item of this page, null if this page is the last one
+     */
+    public final Cursor next;
+
+    public Page(List<T> items, Cursor next) {
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.next = next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page{items=" + items.size() + ", next=" + next + "}";
+    }
+}
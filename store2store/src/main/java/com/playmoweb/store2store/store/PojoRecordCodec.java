@@ -0,0 +1,343 @@
+package com.playmoweb.store2store.store;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Record codec of simple models, by reflection on their fields
+ * Every non static and non transient field of the class (and of its super classes) is written in the order of the
+ * field names, after a version byte. Supported fields are the primitives, their boxed types and String.
+ *
+ * Encoding : version (byte) then for each field
+ * - primitives : fixed size, big endian (boolean on one byte)
+ * - boxed types : presence (byte) then the value if present
+ * - String : length in bytes (int, -1 for null) then the UTF-8 bytes
+ *
+ * The items are created with the constructor having the least parameters (default values are given to its
+ * parameters), then every field is set. The fields are read and written without boxing.
+ *
+ * @note    Change the version when the fields of the class change : older records are then refused.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class PojoRecordCodec<T> implements RecordCodec<T> {
+    private static final int STRING = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int SHORT = 3;
+    private static final int BYTE = 4;
+    private static final int CHAR = 5;
+    private static final int BOOLEAN = 6;
+    private static final int FLOAT = 7;
+    private static final int DOUBLE = 8;
+
+    private final Class<T> clazz;
+    private final byte version;
+    private final Field[] fields;
+    private final int[] kinds;
+    private final boolean[] boxed;
+    private final int fixedSize;
+    private final Constructor<T> constructor;
+    private final Object[] constructorArguments;
+
+    public PojoRecordCodec(Class<T> clazz) {
+        this(clazz, 1);
+    }
+
+    /**
+     * @param version   Version of the records, from 0 to 255
+     */
+    public PojoRecordCodec(Class<T> clazz, int version) {
+        if (version < 0 || version > 255) {
+            throw new IllegalArgumentException("The version of a record must be between 0 and 255");
+        }
+        this.clazz = clazz;
+        this.version = (byte) version;
+
+        final List<Field> declared = new ArrayList<>();
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+                    field.setAccessible(true);
+                    declared.add(field);
+                }
+            }
+        }
+        Collections.sort(declared, new Comparator<Field>() {
+            @Override
+            public int compare(Field a, Field b) {
+                final int byName = a.getName().compareTo(b.getName());
+                return byName != 0 ? byName : a.getDeclaringClass().getName().compareTo(b.getDeclaringClass().getName());
+            }
+        });
+
+        fields = declared.toArray(new Field[declared.size()]);
+        kinds = new int[fields.length];
+        boxed = new boolean[fields.length];
+        int size = 1;
+        for (int i = 0; i < fields.length; i++) {
+            final Class<?> type = fields[i].getType();
+            kinds[i] = kindOf(type);
+            boxed[i] = !type.isPrimitive() && kinds[i] != STRING;
+            size += kinds[i] == STRING ? 4 : (boxed[i] ? 1 : 0);
+        }
+        fixedSize = size;
+
+        constructor = simplestConstructor(clazz);
+        final Class<?>[] parameters = constructor.getParameterTypes();
+        constructorArguments = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            constructorArguments[i] = defaultValue(parameters[i]);
+        }
+    }
+
+    @Override
+    public int encodedSize(T item) {
+        int size = fixedSize;
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if (kinds[i] == STRING) {
+                    final String value = (String) fields[i].get(item);
+                    size += value == null ? 0 : utf8Length(value);
+                } else if (!boxed[i] || fields[i].get(item) != null) {
+                    size += sizeOf(kinds[i]);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return size;
+    }
+
+    @Override
+    public void encode(T item, ByteBuffer target) {
+        target.put(version);
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                final Field field = fields[i];
+                if (kinds[i] == STRING) {
+                    final String value = (String) field.get(item);
+                    if (value == null) {
+                        target.putInt(-1);
+                    } else {
+                        target.putInt(utf8Length(value));
+                        putUtf8(value, target);
+                    }
+                } else if (boxed[i]) {
+                    final Object value = field.get(item);
+                    target.put((byte) (value == null ? 0 : 1));
+                    if (value != null) {
+                        putBoxed(kinds[i], value, target);
+                    }
+                } else {
+                    putPrimitive(kinds[i], field, item, target);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public T decode(ByteBuffer source) {
+        final byte recordVersion = source.get();
+        if (recordVersion != version) {
+            throw new IllegalArgumentException("Record of version " + (recordVersion & 0xFF) + " can't be read as version " + (version & 0xFF) + " of " + clazz.getName());
+        }
+        try {
+            final T item = constructor.newInstance(constructorArguments);
+            for (int i = 0; i < fields.length; i++) {
+                final Field field = fields[i];
+                if (kinds[i] == STRING) {
+                    final int length = source.getInt();
+                    field.set(item, length < 0 ? null : getUtf8(source, length));
+                } else if (boxed[i]) {
+                    field.set(item, source.get() == 0 ? null : getBoxed(kinds[i], source));
+                } else {
+                    getPrimitive(kinds[i], field, item, source);
+                }
+            }
+            return item;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Can't create an instance of " + clazz.getName(), e);
+        }
+    }
+
+    private static void putPrimitive(int kind, Field field, Object item, ByteBuffer target) throws IllegalAccessException {
+        switch (kind) {
+            case INT: target.putInt(field.getInt(item)); break;
+            case LONG: target.putLong(field.getLong(item)); break;
+            case SHORT: target.putShort(field.getShort(item)); break;
+            case BYTE: target.put(field.getByte(item)); break;
+            case CHAR: target.putChar(field.getChar(item)); break;
+            case BOOLEAN: target.put((byte) (field.getBoolean(item) ? 1 : 0)); break;
+            case FLOAT: target.putFloat(field.getFloat(item)); break;
+            default: target.putDouble(field.getDouble(item)); break;
+        }
+    }
+
+    private static void getPrimitive(int kind, Field field, Object item, ByteBuffer source) throws IllegalAccessException {
+        switch (kind) {
+            case INT: field.setInt(item, source.getInt()); break;
+            case LONG: field.setLong(item, source.getLong()); break;
+            case SHORT: field.setShort(item, source.getShort()); break;
+            case BYTE: field.setByte(item, source.get()); break;
+            case CHAR: field.setChar(item, source.getChar()); break;
+            case BOOLEAN: field.setBoolean(item, source.get() != 0); break;
+            case FLOAT: field.setFloat(item, source.getFloat()); break;
+            default: field.setDouble(item, source.getDouble()); break;
+        }
+    }
+
+    private static void putBoxed(int kind, Object value, ByteBuffer target) {
+        switch (kind) {
+            case INT: target.putInt((Integer) value); break;
+            case LONG: target.putLong((Long) value); break;
+            case SHORT: target.putShort((Short) value); break;
+            case BYTE: target.put((Byte) value); break;
+            case CHAR: target.putChar((Character) value); break;
+            case BOOLEAN: target.put((byte) ((Boolean) value ? 1 : 0)); break;
+            case FLOAT: target.putFloat((Float) value); break;
+            default: target.putDouble((Double) value); break;
+        }
+    }
+
+    private static Object getBoxed(int kind, ByteBuffer source) {
+        switch (kind) {
+            case INT: return source.getInt();
+            case LONG: return source.getLong();
+            case SHORT: return source.getShort();
+            case BYTE: return source.get();
+            case CHAR: return source.getChar();
+            case BOOLEAN: return source.get() != 0;
+            case FLOAT: return source.getFloat();
+            default: return source.getDouble();
+        }
+    }
+
+    private static int sizeOf(int kind) {
+        switch (kind) {
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case INT:
+            case FLOAT:
+                return 4;
+            case SHORT:
+            case CHAR:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    private static int kindOf(Class<?> type) {
+        if (type == String.class) return STRING;
+        if (type == int.class || type == Integer.class) return INT;
+        if (type == long.class || type == Long.class) return LONG;
+        if (type == short.class || type == Short.class) return SHORT;
+        if (type == byte.class || type == Byte.class) return BYTE;
+        if (type == char.class || type == Character.class) return CHAR;
+        if (type == boolean.class || type == Boolean.class) return BOOLEAN;
+        if (type == float.class || type == Float.class) return FLOAT;
+        if (type == double.class || type == Double.class) return DOUBLE;
+        throw new IllegalArgumentException("Fields of type " + type.getName() + " are not supported by PojoRecordCodec");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Constructor<T> simplestConstructor(Class<T> clazz) {
+        Constructor<T> simplest = null;
+        for (Constructor<?> candidate : clazz.getDeclaredConstructors()) {
+            if (simplest == null || candidate.getParameterTypes().length < simplest.getParameterTypes().length) {
+                simplest = (Constructor<T>) candidate;
+            }
+        }
+        if (simplest == null) {
+            throw new IllegalArgumentException("No constructor in " + clazz.getName());
+        }
+        simplest.setAccessible(true);
+        return simplest;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return (char) 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        return 0;
+    }
+
+    // UTF-8 written and read directly in the buffers
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void putUtf8(String value, ByteBuffer target) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                target.put((byte) c);
+            } else if (c < 0x800) {
+                target.put((byte) (0xC0 | (c >> 6)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                target.put((byte) (0xF0 | (codePoint >> 18)));
+                target.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                target.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                target.put((byte) (0xE0 | (c >> 12)));
+                target.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                target.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static String getUtf8(ByteBuffer source, int length) {
+        final char[] chars = new char[length];
+        final int end = source.position() + length;
+        int count = 0;
+        while (source.position() < end) {
+            final int b = source.get() & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (source.get() & 0x3F));
+            } else if (b < 0xF0) {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((source.get() & 0x3F) << 6) | (source.get() & 0x3F));
+            } else {
+                final int codePoint = ((b & 0x07) << 18) | ((source.get() & 0x3F) << 12) | ((source.get() & 0x3F) << 6) | (source.get() & 0x3F);
+                count += Character.toChars(codePoint, chars, count);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+}
@@ -0,0 +1,150 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterPredicate;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+
+/**
+ * LRU cache of query results with write invalidation
+ * A write invalidates the cached queries whose filter matches one of the written items, or whose result contains
+ * an item with the same key (its old version). A result is only cached if no write started while it was fetched.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class QueryCache<T> {
+    private final Class<T> clazz;
+    private final KeyExtractor<T, ?> keyExtractor;
+    private final LruMap<QueryKey, CachedResult<T>> entries;
+    private long version = 0;
+
+    QueryCache(Class<T> clazz, KeyExtractor<T, ?> keyExtractor, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of cached queries must be positive");
+        }
+        this.clazz = clazz;
+        this.keyExtractor = keyExtractor;
+        this.entries = new LruMap<>(maxEntries);
+    }
+
+    /**
+     * Serve a query from the cache, or run it and cache its last emission
+     */
+    Flowable<Optional<List<T>>> query(final QueryKey key, final Filter filter, final Flowable<Optional<List<T>>> source) {
+        return Flowable.defer(new Callable<Publisher<Optional<List<T>>>>() {
+            @Override
+            public Publisher<Optional<List<T>>> call() throws Exception {
+                final long startVersion;
+                synchronized (QueryCache.this) {
+                    final CachedResult<T> entry = entries.get(key);
+                    if (entry != null) {
+                        return Flowable.just(Optional.wrap((List<T>) new ArrayList<>(entry.result)));
+                    }
+                    startVersion = version;
+                }
+
+                final FilterPredicate<T> predicate = FilterPredicate.compile(clazz, filter);
+                final AtomicReference<Optional<List<T>>> last = new AtomicReference<>();
+                return source
+                        .doOnNext(new Consumer<Optional<List<T>>>() {
+                            @Override
+                            public void accept(Optional<List<T>> items) throws Exception {
+                                last.set(items);
+                            }
+                        })
+                        .doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                final Optional<List<T>> items = last.get();
+                                if (items != null && !items.isNull()) {
+                                    put(key, predicate, items.get(), startVersion);
+                                }
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Invalidate the queries affected by a write, when it starts and when it ends
+     * @param items Written items, null if the write can affect everything
+     */
+    <R> Flowable<R> invalidating(final Flowable<R> write, final Collection<T> items) {
+        final Action invalidate = new Action() {
+            @Override
+            public void run() throws Exception {
+                invalidate(items);
+            }
+        };
+        return write
+                .doOnSubscribe(new Consumer<Subscription>() {
+                    @Override
+                    public void accept(Subscription subscription) throws Exception {
+                        invalidate(items);
+                    }
+                })
+                .doOnTerminate(invalidate)
+                .doOnCancel(invalidate);
+    }
+
+    synchronized void invalidate(Collection<T> items) {
+        version++;
+        if (items == null) {
+            entries.clear();
+            return;
+        }
+
+        final Iterator<CachedResult<T>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final CachedResult<T> entry = iterator.next();
+            for (T item : items) {
+                if (entry.keys.contains(keyExtractor.getKey(item)) || entry.predicate.test(item)) {
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    synchronized void clear() {
+        invalidate(null);
+    }
+
+    private synchronized void put(QueryKey key, FilterPredicate<T> predicate, List<T> result, long startVersion) {
+        if (startVersion != version) {
+            return; // a write happened meanwhile, the result may be stale
+        }
+
+        final HashSet<Object> keys = new HashSet<>();
+        for (T item : result) {
+            keys.add(keyExtractor.getKey(item));
+        }
+        entries.put(key, new CachedResult<>(predicate, new ArrayList<>(result), keys));
+    }
+
+    private static final class CachedResult<T> {
+        final FilterPredicate<T> predicate;
+        final List<T> result;
+        final HashSet<Object> keys;
+
+        CachedResult(FilterPredicate<T> predicate, List<T> result, HashSet<Object> keys) {
+            this.predicate = predicate;
+            this.result = result;
+            this.keys = keys;
+        }
+    }
+}
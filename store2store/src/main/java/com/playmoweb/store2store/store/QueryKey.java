@@ -0,0 +1,47 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.SortingMode;
+import com.playmoweb.store2store.utils.ValueComparator;
+
+import java.util.Arrays;
+
+/**
+ * Key of a read request : operation, filter, sorting rules and limit (or operation and id)
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class QueryKey {
+    private final Object[] parts;
+    private final int hash;
+
+    private QueryKey(Object[] parts) {
+        this.parts = parts;
+        this.hash = Arrays.hashCode(parts);
+    }
+
+    static QueryKey of(String operation, Filter filter, SortingMode sortingMode, int limit) {
+        // filters are structurally hashed, an immutable filter is kept as it is
+        return new QueryKey(new Object[]{operation, filter == null ? null : filter.immutable(), sortingMode == null ? null : sortingMode.copy(), limit});
+    }
+
+    static QueryKey of(String operation, Object id) {
+        return new QueryKey(new Object[]{operation, ValueComparator.normalize(id)});
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof QueryKey && hash == ((QueryKey) o).hash && Arrays.equals(parts, ((QueryKey) o).parts));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(parts);
+    }
+}
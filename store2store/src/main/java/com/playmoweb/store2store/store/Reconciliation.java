@@ -0,0 +1,41 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Difference between the items of a store and a fresh version of the same dataset
+ * Items are matched by key, the matched items are only updated when their content hash changed (always without
+ * content hasher).
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class Reconciliation<T> {
+    final List<T> toInsert = new ArrayList<>();
+    final List<T> toUpdate = new ArrayList<>();
+    final List<T> toDelete = new ArrayList<>();
+
+    private Reconciliation() {
+    }
+
+    static <T> Reconciliation<T> diff(List<T> current, List<T> fresh, KeyExtractor<T, ?> keyExtractor, ContentHasher<T> hasher) {
+        final LinkedHashMap<Object, T> remaining = new LinkedHashMap<>(current.size() * 2);
+        for (T item : current) {
+            remaining.put(keyExtractor.getKey(item), item);
+        }
+
+        final Reconciliation<T> reconciliation = new Reconciliation<>();
+        for (T item : fresh) {
+            final T old = remaining.remove(keyExtractor.getKey(item));
+            if (old == null) {
+                reconciliation.toInsert.add(item);
+            } else if (hasher == null || hasher.hash(old) != hasher.hash(item)) {
+                reconciliation.toUpdate.add(item);
+            }
+        }
+        reconciliation.toDelete.addAll(remaining.values());
+        return reconciliation;
+    }
+}
@@ -0,0 +1,29 @@
+package com.playmoweb.store2store.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary format of the items written by the persistent daos and the outbox
+ * The items are encoded into and decoded from buffers provided by the caller (heap, direct or memory-mapped), so a
+ * record never goes through an intermediate array.
+ * @note    An encoding should start with a version, to recognize the records written by an older format.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public interface RecordCodec<T> {
+    /**
+     * Exact number of bytes written by encode
+     */
+    int encodedSize(T item);
+
+    /**
+     * Write an item at the position of a buffer, the position is moved after it
+     */
+    void encode(T item, ByteBuffer target);
+
+    /**
+     * Read an item from the position of a buffer up to its limit
+     */
+    T decode(ByteBuffer source);
+}
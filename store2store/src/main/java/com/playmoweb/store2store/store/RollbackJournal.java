@@ -0,0 +1,41 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.reactivex.Completable;
+
+/**
+ * Undo record of a write on the synced store
+ * It keeps the items written and the versions they replaced, as returned by the write itself, until the write of the
+ * dao is known : it is dropped when the dao succeeds and applied when it fails.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class RollbackJournal<T> {
+    private final List<T> written;
+    private final List<T> previous;
+
+    RollbackJournal(List<T> written, Optional<List<T>> previous) {
+        this.written = written;
+        this.previous = previous.isNull() ? Collections.<T>emptyList() : new ArrayList<>(previous.get());
+    }
+
+    static <T> RollbackJournal<T> of(T written, Optional<T> previous) {
+        return new RollbackJournal<>(Collections.singletonList(written),
+                Optional.wrap(previous.isNull() ? null : Collections.singletonList(previous.get())));
+    }
+
+    /**
+     * Restore the store as it was before the write : the written items are removed and the replaced versions put back
+     */
+    Completable undo(StoreDao<T> store) {
+        final Completable removal = store.delete(written).ignoreElements();
+        if (previous.isEmpty()) {
+            return removal;
+        }
+        return removal.andThen(store.insertOrUpdate(previous).ignoreElements());
+    }
+}
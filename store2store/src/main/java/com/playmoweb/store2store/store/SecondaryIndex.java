@@ -0,0 +1,85 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.FieldAccessor;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.ValueComparator;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Secondary index mapping the value of a field to the primary keys of the rows
+ * @note    The indexed value of each key is remembered so that rows mutated in place are still removed from the right bucket.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+abstract class SecondaryIndex<K> {
+    final FieldAccessor accessor;
+
+    /**
+     * Last indexed value of each primary key
+     */
+    final HashMap<K, Object> indexedValues = new HashMap<>();
+
+    SecondaryIndex(FieldAccessor accessor) {
+        this.accessor = accessor;
+    }
+
+    String field() {
+        return accessor.getName();
+    }
+
+    void add(K key, Object row) {
+        final Object value = accessor.get(row);
+        if (indexedValues.containsKey(key)) {
+            final Object previous = indexedValues.get(key);
+            if (ValueComparator.equal(previous, value)) {
+                return; // same bucket, keep the position
+            }
+            removeFromBucket(previous, key);
+        }
+        indexedValues.put(key, value);
+        addToBucket(value, key);
+    }
+
+    void remove(K key) {
+        if (indexedValues.containsKey(key)) {
+            removeFromBucket(indexedValues.remove(key), key);
+        }
+    }
+
+    void clear() {
+        indexedValues.clear();
+        clearBuckets();
+    }
+
+    /**
+     * @return  true if the rows can be walked in the order of the indexed values
+     */
+    abstract boolean isOrdered();
+
+    abstract boolean supports(FilterType type);
+
+    /**
+     * Estimated number of keys returned by a lookup, used to choose between indexes
+     */
+    abstract int estimate(FilterType type, Object value);
+
+    /**
+     * Keys of the rows matching the filter, in the index order when the index is ordered
+     * @note    The keys are walked lazily : the index must not change until the walk is over.
+     */
+    abstract Iterator<K> lookup(FilterType type, Object value, boolean descending);
+
+    /**
+     * All the keys in the index order, walked lazily
+     */
+    abstract Iterator<K> scan(boolean descending);
+
+    abstract void addToBucket(Object value, K key);
+
+    abstract void removeFromBucket(Object value, K key);
+
+    abstract void clearBuckets();
+}
@@ -0,0 +1,156 @@
+package com.playmoweb.store2store.store;
+
+import com.playmoweb.store2store.utils.FieldAccessor;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.ValueComparator;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Sorted index answering every filter type by walking only the matching range
+ * The keys are walked lazily from the tail or head map : a limited query only reads the keys it needs.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+class SortedIndex<K> extends SecondaryIndex<K> {
+    private final TreeMap<Object, LinkedHashSet<K>> buckets = new TreeMap<>(ValueComparator.INSTANCE);
+
+    SortedIndex(FieldAccessor accessor) {
+        super(accessor);
+    }
+
+    @Override
+    boolean isOrdered() {
+        return true;
+    }
+
+    @Override
+    boolean supports(FilterType type) {
+        return type != FilterType.IN && type != FilterType.NOT_IN; // conditions on many values are checked by the filter
+    }
+
+    @Override
+    int estimate(FilterType type, Object value) {
+        final LinkedHashSet<K> bucket = buckets.get(value);
+        final int size = bucket == null ? 0 : bucket.size();
+        switch (type) {
+            case EQUAL:
+                return size;
+            case NOT_EQUAL:
+                return indexedValues.size() - size;
+            default:
+                // counting a sub map is linear, assume a range selects a third of the rows
+                return indexedValues.size() / 3;
+        }
+    }
+
+    @Override
+    Iterator<K> lookup(FilterType type, Object value, boolean descending) {
+        switch (type) {
+            case EQUAL:
+                final LinkedHashSet<K> bucket = buckets.get(value);
+                return bucket == null ? new Keys<K>(null, null) : bucket.iterator();
+            case NOT_EQUAL:
+                final Collection<LinkedHashSet<K>> below = buckets(buckets.headMap(value, false), descending);
+                final Collection<LinkedHashSet<K>> above = buckets(buckets.tailMap(value, false), descending);
+                return descending ? new Keys<>(above.iterator(), below.iterator()) : new Keys<>(below.iterator(), above.iterator());
+            case GREATER_THAN:
+                return keys(buckets.tailMap(value, false), descending);
+            case GREATER_THAN_OR_EQUAL:
+                return keys(buckets.tailMap(value, true), descending);
+            case LESS_THAN:
+                return keys(buckets.headMap(value, false), descending);
+            case LESS_THAN_OR_EQUAL:
+                return keys(buckets.headMap(value, true), descending);
+            default:
+                throw new IllegalStateException("Unknown filter type " + type);
+        }
+    }
+
+    @Override
+    Iterator<K> scan(boolean descending) {
+        return keys(buckets, descending);
+    }
+
+    @Override
+    void addToBucket(Object value, K key) {
+        LinkedHashSet<K> bucket = buckets.get(value);
+        if (bucket == null) {
+            bucket = new LinkedHashSet<>();
+            buckets.put(value, bucket);
+        }
+        bucket.add(key);
+    }
+
+    @Override
+    void removeFromBucket(Object value, K key) {
+        final LinkedHashSet<K> bucket = buckets.get(value);
+        if (bucket != null && bucket.remove(key) && bucket.isEmpty()) {
+            buckets.remove(value);
+        }
+    }
+
+    @Override
+    void clearBuckets() {
+        buckets.clear();
+    }
+
+    private Iterator<K> keys(NavigableMap<Object, LinkedHashSet<K>> range, boolean descending) {
+        return new Keys<>(buckets(range, descending).iterator(), null);
+    }
+
+    private Collection<LinkedHashSet<K>> buckets(NavigableMap<Object, LinkedHashSet<K>> range, boolean descending) {
+        return (descending ? range.descendingMap() : range).values();
+    }
+
+    /**
+     * Keys of consecutive buckets, read one bucket at a time
+     */
+    private static final class Keys<K> implements Iterator<K> {
+        private Iterator<LinkedHashSet<K>> buckets;
+        private Iterator<LinkedHashSet<K>> next;
+        private Iterator<K> current;
+
+        /**
+         * @param next  Buckets walked after the first ones, null if none
+         */
+        Keys(Iterator<LinkedHashSet<K>> buckets, Iterator<LinkedHashSet<K>> next) {
+            this.buckets = buckets;
+            this.next = next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                if (buckets != null && buckets.hasNext()) {
+                    current = buckets.next().iterator();
+                } else if (next != null) {
+                    buckets = next;
+                    next = null;
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public K next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -1,8 +1,16 @@
 package com.playmoweb.store2store.store;
 
+import com.playmoweb.store2store.utils.Cursor;
 import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.FilterType;
+import com.playmoweb.store2store.utils.SortType;
 import com.playmoweb.store2store.utils.SortingMode;
 
+import org.reactivestreams.Publisher;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import io.reactivex.Flowable;
@@ -19,6 +27,98 @@ public abstract class StoreDao<T> {
         throw new UnsupportedOperationException("This method has not been implemented in the child class");
     }
 
+    /**
+     * Get the first items of an ordering
+     * @note    The default implementation truncates the full result, override it to push the limit down.
+     */
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("The limit must be positive");
+        }
+        return getAll(filter, sortingMode).map(new Function<Optional<List<T>>, Optional<List<T>>>() {
+            @Override
+            public Optional<List<T>> apply(Optional<List<T>> items) throws Exception {
+                if (items.isNull() || items.get().size() <= limit) {
+                    return items;
+                }
+                return Optional.wrap((List<T>) new ArrayList<>(items.get().subList(0, limit)));
+            }
+        });
+    }
+
+    /**
+     * Stream the items in pages of at most pageSize items, a page is only read when it is requested
+     * @note    The default implementation pages the full result, override it to read the pages lazily.
+     */
+    public Flowable<List<T>> stream(final Filter filter, final SortingMode sortingMode, final int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The size of a page must be positive");
+        }
+        return getAll(filter, sortingMode).concatMap(new Function<Optional<List<T>>, Publisher<List<T>>>() {
+            @Override
+            public Publisher<List<T>> apply(Optional<List<T>> items) throws Exception {
+                if (items.isNull()) {
+                    return Flowable.empty();
+                }
+                return Flowable.fromIterable(items.get()).buffer(pageSize);
+            }
+        });
+    }
+
+    /**
+     * Get a page of an ordering, starting strictly after a cursor (keyset pagination)
+     * @param cursor    Position of the last row of the previous page, null for the first page
+     * @note    The default implementation pushes the cursor down as a filter on the sorting key when there is only one
+     *          (the dao can then answer with an index seek), and otherwise skips the rows before the cursor.
+     */
+    public Flowable<Page<T>> getPage(final Filter filter, final SortingMode sortingMode, final Cursor cursor, final int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The size of a page must be positive");
+        }
+        if (sortingMode == null || sortingMode.entries.isEmpty()) {
+            throw new IllegalArgumentException("A page needs sorting rules");
+        }
+        if (cursor != null && cursor.size() != sortingMode.entries.size()) {
+            throw new IllegalArgumentException("The cursor must have a value for each sorting key");
+        }
+
+        final int limit = pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1; // one more row to know if there is a next page
+        final AbstractMap.SimpleEntry<String, SortType> firstSort = sortingMode.entries.getFirst();
+        final boolean seek = cursor != null && sortingMode.entries.size() == 1 && cursor.value(0) != null
+                && (filter == null || !filter.containsKey(firstSort.getKey()));
+
+        final Flowable<Optional<List<T>>> rows;
+        if (cursor == null) {
+            rows = getAll(filter, sortingMode, limit);
+        } else if (seek) {
+            final FilterType type = firstSort.getValue() == SortType.DESCENDING ? FilterType.LESS_THAN : FilterType.GREATER_THAN;
+            rows = getAll((filter == null ? new Filter() : new Filter(filter)).add(firstSort.getKey(), type, cursor.value(0)), sortingMode, limit);
+        } else {
+            rows = getAll(filter, sortingMode);
+        }
+
+        return rows.map(new Function<Optional<List<T>>, Page<T>>() {
+            @Override
+            public Page<T> apply(Optional<List<T>> items) throws Exception {
+                final List<T> page = new ArrayList<>();
+                boolean hasNext = false;
+                if (!items.isNull()) {
+                    for (T item : items.get()) {
+                        if (cursor != null && !seek && !cursor.isBefore(sortingMode, item)) {
+                            continue;
+                        }
+                        if (page.size() == pageSize) {
+                            hasNext = true;
+                            break;
+                        }
+                        page.add(item);
+                    }
+                }
+                return new Page<>(page, hasNext ? Cursor.after(sortingMode, page.get(page.size() - 1)) : null);
+            }
+        });
+    }
+
     public Flowable<Optional<List<T>>> getAll(List<T> items) {
         throw new UnsupportedOperationException("This method has not been implemented in the child class");
     }
@@ -35,6 +135,14 @@ public abstract class StoreDao<T> {
         throw new UnsupportedOperationException("This method has not been implemented in the child class");
     }
 
+    /**
+     * Get the items of many ids in a single call
+     * @note    Unknown ids are skipped, an id given twice returns its item once.
+     */
+    public <S> Flowable<Optional<List<T>>> getByIds(final Collection<S> ids) {
+        throw new UnsupportedOperationException("This method has not been implemented in the child class");
+    }
+
     public Flowable<Optional<T>> insert(final T item) {
         throw new UnsupportedOperationException("This method has not been implemented in the child class");
     }
@@ -59,6 +167,36 @@ public abstract class StoreDao<T> {
         throw new UnsupportedOperationException("This method has not been implemented in the child class");
     }
 
+    /**
+     * Insert or update items and give the versions they replaced, to undo the write if needed
+     * @return  The previous versions of the items that already existed
+     * @note    The default implementation reads the items before writing them, override it when the write itself can
+     *          return the replaced versions.
+     */
+    public Flowable<Optional<List<T>>> insertOrUpdateReturningPrevious(final List<T> items) {
+        return getAll(items).take(1).concatMap(new Function<Optional<List<T>>, Publisher<Optional<List<T>>>>() {
+            @Override
+            public Publisher<Optional<List<T>>> apply(Optional<List<T>> previous) throws Exception {
+                return insertOrUpdate(items).ignoreElements().andThen(Flowable.just(previous));
+            }
+        });
+    }
+
+    /**
+     * Insert or update an item and give the version it replaced, to undo the write if needed
+     * @return  The previous version of the item, null if it did not exist
+     * @note    The default implementation reads the item before writing it, override it when the write itself can
+     *          return the replaced version.
+     */
+    public Flowable<Optional<T>> insertOrUpdateReturningPrevious(final T item) {
+        return getOne(item).take(1).concatMap(new Function<Optional<T>, Publisher<Optional<T>>>() {
+            @Override
+            public Publisher<Optional<T>> apply(Optional<T> previous) throws Exception {
+                return insertOrUpdate(item).ignoreElements().andThen(Flowable.just(previous));
+            }
+        });
+    }
+
     /**
      * @return int  Number of items deleted
      */
@@ -80,6 +218,61 @@ public abstract class StoreDao<T> {
         throw new UnsupportedOperationException("This method has not been implemented in the child class");
     }
 
+    /**
+     * Apply a batch of writes
+     * @return  The batch applied, with the written items as returned by the dao
+     * @note    The default implementation sends the inserts, the updates, the upserts then the deletes, override it to
+     *          apply the batch in a single request (atomically if the dao can).
+     */
+    public Flowable<WriteBatch<T>> applyBatch(final WriteBatch<T> batch) {
+        final Flowable<Optional<List<T>>> inserts = batch.inserts.isEmpty()
+                ? Flowable.just(Optional.wrap(batch.inserts))
+                : insert(batch.inserts);
+
+        return inserts.concatMap(new Function<Optional<List<T>>, Publisher<WriteBatch<T>>>() {
+            @Override
+            public Publisher<WriteBatch<T>> apply(final Optional<List<T>> inserted) throws Exception {
+                final Flowable<Optional<List<T>>> updates = batch.updates.isEmpty()
+                        ? Flowable.just(Optional.wrap(batch.updates))
+                        : update(batch.updates);
+
+                return updates.concatMap(new Function<Optional<List<T>>, Publisher<WriteBatch<T>>>() {
+                    @Override
+                    public Publisher<WriteBatch<T>> apply(final Optional<List<T>> updated) throws Exception {
+                        final Flowable<Optional<List<T>>> upserts = batch.upserts.isEmpty()
+                                ? Flowable.just(Optional.wrap(batch.upserts))
+                                : insertOrUpdate(batch.upserts);
+
+                        return upserts.concatMap(new Function<Optional<List<T>>, Publisher<WriteBatch<T>>>() {
+                            @Override
+                            public Publisher<WriteBatch<T>> apply(Optional<List<T>> written) throws Exception {
+                                final WriteBatch<T> applied = new WriteBatch<>(
+                                        inserted.isNull() ? batch.inserts : inserted.get(),
+                                        updated.isNull() ? batch.updates : updated.get(),
+                                        written.isNull() ? batch.upserts : written.get(),
+                                        batch.deletes
+                                );
+                                if (batch.deletes.isEmpty()) {
+                                    return Flowable.just(applied);
+                                }
+                                return delete(batch.deletes).ignoreElements().andThen(Flowable.just(applied));
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Get the changes of the dataset since a change token (incremental sync)
+     * @param token Token of the previous change set, null to get every item
+     * @return  A single change set with its new token
+     */
+    public Flowable<ChangeSet<T>> getChangesSince(final String token) {
+        throw new UnsupportedOperationException("This method has not been implemented in the child class");
+    }
+
     /**
      * Wrap an object into an flowable optional
      */
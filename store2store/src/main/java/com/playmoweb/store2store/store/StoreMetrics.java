@@ -0,0 +1,41 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Listener of the calls made by a Store to its tiers
+ * Each call to the dao (remote tier) or to the synced store (local tier) is reported once it terminates, with its
+ * duration, the size of its result and its error. The operation is the name of the method called (getAll,
+ * insertOrUpdate, ...). The rollbacks of the optimistic writes are reported with the operation they undo.
+ *
+ * @note    The methods are called on the threads of the calls : an implementation must be thread safe and fast.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public interface StoreMetrics {
+    enum Tier {
+        LOCAL,
+        REMOTE
+    }
+
+    /**
+     * No metrics (default behaviour) : the calls are not measured at all
+     */
+    StoreMetrics NONE = new StoreMetrics() {
+        @Override
+        public void onCall(Class<?> store, String operation, Tier tier, long durationNanos, int resultSize, Throwable error) {
+        }
+
+        @Override
+        public void onRollback(Class<?> store, String operation) {
+        }
+    };
+
+    /**
+     * @param store         Class of the Store making the call
+     * @param resultSize    Number of items of the last emission, -1 if unknown
+     * @param error         null if the call succeeded (or was cancelled)
+     */
+    void onCall(Class<?> store, String operation, Tier tier, long durationNanos, int resultSize, Throwable error);
+
+    void onRollback(Class<?> store, String operation);
+}
@@ -1,14 +1,38 @@
 package com.playmoweb.store2store.store;
 
+import com.playmoweb.store2store.utils.Cursor;
 import com.playmoweb.store2store.utils.Filter;
+import com.playmoweb.store2store.utils.ReadPolicy;
 import com.playmoweb.store2store.utils.SortingMode;
 
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Completable;
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.flowables.ConnectableFlowable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.DisposableSubscriber;
 
 /**
  * Abstract StoreService
@@ -34,6 +58,67 @@ public abstract class StoreService<T> extends StoreDao<T> {
      */
     private StoreService<T> syncedStore;
 
+    /**
+     * Primary key of the items, null if unknown
+     */
+    private KeyExtractor<T, ?> keyExtractor;
+
+    /**
+     * Cache of the query results, null if disabled
+     */
+    private QueryCache<T> queryCache;
+
+    /**
+     * Reads in flight shared by identical requests, null if disabled
+     */
+    private InFlightRequests inFlightRequests;
+
+    /**
+     * Queue of the single item writes sent to the dao in batches, null if disabled
+     */
+    private WriteBehindQueue<T> writeBehindQueue;
+
+    /**
+     * Delivery of the writes journaled in an outbox, null if the writes wait for the dao
+     */
+    private OutboxRelay<T> outboxRelay;
+
+    /**
+     * Content of the items compared when the synced store is reconciled with a full refresh, null to replace everything
+     */
+    private ContentHasher<T> contentHasher;
+
+    /**
+     * How the reads by key use the synced store
+     */
+    private ReadPolicy readPolicy = ReadPolicy.EMIT_ALL;
+
+    /**
+     * Whether the reads subscribe the synced store and the dao at once (the emissions stay ordered)
+     */
+    private boolean parallelReads = true;
+
+    /**
+     * Threads of the calls to the dao and to the synced store
+     */
+    private ExecutionPolicy executionPolicy = ExecutionPolicy.CALLER;
+
+    /**
+     * Listener of the calls to the dao and to the synced store
+     */
+    private StoreMetrics metrics = StoreMetrics.NONE;
+
+    /**
+     * Default freshness rules of the reads, null to always read the dao
+     */
+    private FreshnessPolicy freshnessPolicy;
+    private final FreshnessTracker freshnessTracker = new FreshnessTracker();
+
+    /**
+     * Change token of the last incremental sync applied to the synced store, null if none
+     */
+    private volatile String syncToken;
+
     /**
      * A local composite disposable to handle local subscriptions
      */
@@ -52,9 +137,298 @@ public abstract class StoreService<T> extends StoreDao<T> {
      */
     public StoreService<T> syncWith(StoreService<T> otherStore) {
         syncedStore = otherStore;
+        syncToken = null;
+        return this;
+    }
+
+    /**
+     * Sync with an ordered chain of stores, from the fastest one (memory) to the slowest one (disk) below this Store
+     * Each store of the chain is synced with the previous one : reads backfill the faster stores, writes go through
+     * every store and a failed write is rolled back store by store.
+     */
+    public StoreService<T> syncWith(List<StoreService<T>> chain) {
+        if (chain.isEmpty()) {
+            throw new IllegalArgumentException("The chain of stores can't be empty");
+        }
+        for (int i = chain.size() - 1; i > 0; i--) {
+            chain.get(i).syncWith(chain.get(i - 1));
+        }
+        return syncWith(chain.get(chain.size() - 1));
+    }
+
+    /**
+     * Get the store synced with this one, null if none
+     */
+    public StoreService<T> getSyncedStore() {
+        return syncedStore;
+    }
+
+    /**
+     * Choose how the reads by key use the synced stores (emit every store by default)
+     */
+    public StoreService<T> setReadPolicy(ReadPolicy readPolicy) {
+        this.readPolicy = readPolicy;
+        return this;
+    }
+
+    /**
+     * Subscribe the synced store and the dao at once in the reads, or the dao only once the synced store completed
+     * The emissions are ordered in both modes : every emission of the synced store comes first. With parallel reads
+     * (the default) a read lasts as long as its slowest store instead of the sum of both : the dao is subscribed
+     * once the synced store is, on the remote threads of the execution policy (the io threads if it has none). Its
+     * results are written back to the synced store once the synced store was read.
+     * @note    The FIRST_HIT reads stay sequential, the dao is only read on a miss.
+     */
+    public StoreService<T> setParallelReads(boolean parallelReads) {
+        this.parallelReads = parallelReads;
+        return this;
+    }
+
+    /**
+     * Choose the threads of the calls to the dao and to the synced store (the subscribing thread by default)
+     * The policy of the synced store applies to its own dao : set a policy on each Store of a chain.
+     */
+    public StoreService<T> setExecutionPolicy(ExecutionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("The execution policy can't be null, use ExecutionPolicy.CALLER");
+        }
+        this.executionPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Report the calls to the dao and to the synced store (durations, result sizes, errors and rollbacks)
+     * @note    Set the same metrics on the synced store to measure the tiers below it.
+     */
+    public StoreService<T> setMetrics(StoreMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("The metrics can't be null, use StoreMetrics.NONE");
+        }
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Skip or defer the reads of the dao while the synced store was refreshed recently enough
+     * Applies to getAll(filter, sortingMode), getOne(filter, sortingMode) and getById, the time of the last refresh
+     * is kept per request (filter and sorting rules, or id). Each of these reads also accepts its own policy.
+     */
+    public StoreService<T> setFreshnessPolicy(FreshnessPolicy policy) {
+        this.freshnessPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Forget the refreshes, the next reads all read the dao
+     */
+    public void invalidateFreshness() {
+        freshnessTracker.clear();
+    }
+
+    /**
+     * Change token of the last incremental sync, to be persisted to resume the syncs after a restart
+     */
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    /**
+     * Resume the incremental syncs from a persisted change token, null to sync everything again
+     */
+    public void setSyncToken(String token) {
+        syncToken = token;
+    }
+
+    /**
+     * Pull the changes of the dao since the last sync and apply them to the synced store
+     * Upserts are written with insertOrUpdate(List), tombstones are read with getByIds then deleted with
+     * delete(List). The first sync (without token) gets a full snapshot : it replaces the content of the synced store,
+     * as an unfiltered getAll does. The new token is kept only once the changes are applied. The items with local-ack
+     * writes not delivered yet are left as they are.
+     *
+     * @note    The dao must implement getChangesSince, and the dao of the synced store getByIds.
+     * @warn    Syncs must not run concurrently on the same Store.
+     */
+    public Flowable<ChangeSet<T>> sync() {
+        if (!hasSyncedStore()) {
+            throw new IllegalStateException("This Store is not synced with another Store");
+        }
+
+        final Flowable<ChangeSet<T>> flowable = Flowable.defer(new Callable<Publisher<ChangeSet<T>>>() {
+            @Override
+            public Publisher<ChangeSet<T>> call() throws Exception {
+                return remote("getChangesSince", dao.getChangesSince(syncToken));
+            }
+        }).concatMap(new Function<ChangeSet<T>, Flowable<ChangeSet<T>>>() {
+            @Override
+            public Flowable<ChangeSet<T>> apply(final ChangeSet<T> changes) throws Exception {
+                final List<Completable> writes = new ArrayList<>();
+                if (syncToken == null) {
+                    // full snapshot : the items it does not contain are gone
+                    return replaceAll(changes.upserts).ignoreElements().andThen(keepToken(changes));
+                }
+                if (!changes.deletedIds.isEmpty()) {
+                    writes.add(localRead("getByIds", syncedStore.getDao().getByIds(changes.deletedIds))
+                            .concatMap(new Function<Optional<List<T>>, Flowable<Integer>>() {
+                                @Override
+                                public Flowable<Integer> apply(Optional<List<T>> deleted) throws Exception {
+                                    final List<T> stale = deleted.isNull() ? Collections.<T>emptyList() : withoutPendingWrites(deleted.get());
+                                    if (stale.isEmpty()) {
+                                        return Flowable.just(0);
+                                    }
+                                    return localWrite("delete", syncedStore.delete(stale));
+                                }
+                            })
+                            .ignoreElements());
+                }
+                if (!changes.upserts.isEmpty()) {
+                    writes.add(writeBack(changes.upserts).ignoreElements());
+                }
+
+                return Completable.concat(writes).andThen(keepToken(changes));
+            }
+        });
+        return invalidateQueries(flowable, null);
+    }
+
+    /**
+     * Keep the token of applied changes, then emit them
+     */
+    private Flowable<ChangeSet<T>> keepToken(final ChangeSet<T> changes) {
+        return Flowable.fromCallable(new Callable<ChangeSet<T>>() {
+            @Override
+            public ChangeSet<T> call() throws Exception {
+                syncToken = changes.token;
+                return changes;
+            }
+        });
+    }
+
+    /**
+     * Declare the primary key of the items
+     * The copies taken by insertOrUpdate(List) and update(List) are then read by ids with getByIds on the synced
+     * store instead of getAll(List).
+     *
+     * @warn    The dao of the synced store must implement getByIds.
+     */
+    public StoreService<T> withKeyExtractor(KeyExtractor<T, ?> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        return this;
+    }
+
+    /**
+     * Cache the results of getAll queries until a write through this Store can affect them
+     * A query is cached with its last emission when it completes, a cached query then emits only this result
+     * without reading the stores.
+     *
+     * @param maxEntries    Maximum number of cached queries (least recently used are dropped first)
+     * @note    The primary key of the items must be declared with withKeyExtractor, it finds the cached results
+     *          containing a written item.
+     * @warn    Writes that do not go through this Store (directly on the dao or the synced store) are not seen.
+     */
+    public StoreService<T> enableQueryCache(int maxEntries) {
+        queryCache = new QueryCache<>(clazz, requireKeyExtractor("A query cache"), maxEntries);
+        return this;
+    }
+
+    /**
+     * Share a single read of the stores between the identical getById, getAll and getOne requests running at the
+     * same time (same arguments), the dao is then read and the synced store written back only once.
+     * A request arriving while the shared read is running gets the emissions already received replayed.
+     */
+    public StoreService<T> enableRequestCoalescing() {
+        inFlightRequests = new InFlightRequests();
+        return this;
+    }
+
+    /**
+     * Send the single item writes (insertOrUpdate(T) and update(T)) to the dao in batches
+     * The writes are collected during a time window, or until maxBatchSize distinct items are waiting, then sent
+     * with a single dao.insertOrUpdate(List) call. Writes of the same key in a window are collapsed into the last one.
+     * The synced store is still written immediately, each writer completes with the batch. A batch that fails is
+     * failed as a whole : each key of the batch is restored in the synced store to its version before the window
+     * and every writer of the batch gets the error.
+     *
+     * @note    The primary key of the items must be declared with withKeyExtractor, it collapses the writes and
+     *          dispatches the results.
+     * @note    The batches are sent on the remote threads of the execution policy (the io threads if it has none) and
+     *          measured as the other calls to the dao : set the execution policy first.
+     * @warn    update(T) no longer calls dao.update(T) : the dao must accept updates through insertOrUpdate(List).
+     */
+    public StoreService<T> enableWriteBehind(long window, TimeUnit unit, int maxBatchSize) {
+        final Scheduler scheduler = executionPolicy.remote == null ? Schedulers.io() : executionPolicy.remote;
+        writeBehindQueue = new WriteBehindQueue<>(
+                new Function<List<T>, Flowable<Optional<List<T>>>>() {
+                    @Override
+                    public Flowable<Optional<List<T>>> apply(List<T> items) throws Exception {
+                        return remote("insertOrUpdate", dao.insertOrUpdate(items));
+                    }
+                },
+                requireKeyExtractor("The write-behind"), window, unit, maxBatchSize, scheduler,
+                new Function<RollbackJournal<T>, Completable>() {
+                    @Override
+                    public Completable apply(RollbackJournal<T> journal) throws Exception {
+                        return rollback("insertOrUpdate", journal);
+                    }
+                });
+        return this;
+    }
+
+    /**
+     * Send the writes waiting in the write-behind queue or in the outbox now
+     */
+    public void flushWrites() {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.flush();
+        }
+        if (outboxRelay != null) {
+            outboxRelay.flush();
+        }
+    }
+
+    /**
+     * Acknowledge the writes once they are in the synced store and journaled in a durable outbox (local-ack)
+     * The dao is written in background : the journaled writes are collapsed by key and sent in order with
+     * applyBatch, by batches of at most maxBatchSize writes after the write window. A batch that fails is sent again
+     * later, the synced store is never rolled back. Writes left in the outbox by a previous process are sent now.
+     *
+     * @note    The synced store is written first (an update of a missing item fails there), then the write is
+     *          journaled with its kind, the synced store being restored if the journal can't be written.
+     *          Takes precedence over the write-behind.
+     * @note    The primary key of the items must be declared with withKeyExtractor, it collapses the writes.
+     * @warn    The dao receives every insert, update, upsert and delete through applyBatch, at least once : a write
+     *          may be received again after a crash.
+     */
+    public StoreService<T> enableOutbox(Outbox<T> outbox, long window, TimeUnit unit, int maxBatchSize) {
+        outboxRelay = new OutboxRelay<>(outbox, dao, requireKeyExtractor("An outbox"), window, unit, maxBatchSize, Schedulers.io());
+        if (outbox.size() > 0) {
+            outboxRelay.flush();
+        }
+        return this;
+    }
+
+    /**
+     * Reconcile the synced store with the result of an unfiltered getAll instead of replacing its content
+     * The fresh items are compared with the items of the synced store by key then by content hash : only the new,
+     * changed and removed items are written with insert(List), update(List) and delete(List).
+     *
+     * @note    The primary key of the items must be declared with withKeyExtractor.
+     */
+    public StoreService<T> enableReconciliation(ContentHasher<T> hasher) {
+        requireKeyExtractor("The reconciliation");
+        this.contentHasher = hasher;
         return this;
     }
 
+    /**
+     * Drop all the cached query results
+     */
+    public void clearQueryCache() {
+        if (queryCache != null) {
+            queryCache.clear();
+        }
+    }
+
     /**
      * Get the dao used by this Store
      *
@@ -82,62 +456,143 @@ public abstract class StoreService<T> extends StoreDao<T> {
 
     @Override
     public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode) {
-        Flowable<Optional<List<T>>> flowStorage = dao.getAll(filter, sortingMode);
+        return getAll(filter, sortingMode, freshnessPolicy);
+    }
+
+    /**
+     * Get all the items with specific freshness rules
+     * @param policy    null to always read the dao
+     */
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode, final FreshnessPolicy policy) {
+        final QueryKey key = QueryKey.of("getAll", filter, sortingMode, 0);
+        final Flowable<Optional<List<T>>> flowable = coalesce(key, getAllFromStores(key, filter, sortingMode, policy));
+        if (queryCache != null) {
+            return queryCache.query(key, filter, flowable);
+        }
+        return flowable;
+    }
+
+    private Flowable<Optional<List<T>>> getAllFromStores(final QueryKey key, final Filter filter, final SortingMode sortingMode, final FreshnessPolicy policy) {
+        final Flowable<Optional<List<T>>> flowStorage = remote("getAll", dao.getAll(filter, sortingMode));
 
         if (!hasSyncedStore()) {
             return flowStorage;
         }
 
-        final List<Flowable<Optional<List<T>>>> flowables = new ArrayList<>();
-        flowStorage = flowStorage
-                .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+        return readThrough(key, policy, localRead("getAll", syncedStore.getAll(filter, sortingMode)), flowStorage,
+                new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                     @Override
                     public Flowable<Optional<List<T>>> apply(Optional<List<T>> items) throws Exception {
                         final List<T> copy = new ArrayList<>(items.get());
                         if (filter == null) {
-                            // full replacement, we clean up the Store dao
-                            return syncedStore.deleteAll().map(new Function<Integer, Optional<List<T>>>() {
-                                @Override
-                                public Optional<List<T>> apply(Integer integer) throws Exception {
-                                    return Optional.wrap(copy);
-                                }
-                            });
+                            return replaceAll(copy);
                         }
-                        return Flowable.just(Optional.wrap(copy));
-                    }
-                })
-                .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
-                    @Override
-                    public Flowable<Optional<List<T>>> apply(Optional<List<T>> items) throws Exception {
-                        return syncedStore.insertOrUpdate(items.get());
+                        return writeBack(copy);
                     }
                 });
+    }
 
-        flowables.add(syncedStore.getAll(filter, sortingMode));
-        flowables.add(flowStorage);
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final List<T> items) {
+        final Flowable<Optional<List<T>>> flowStorage = remote("getAll", dao.getAll(items));
+
+        if (!hasSyncedStore()) {
+            return flowStorage;
+        }
 
-        return Flowable.concat(flowables);
+        return readInOrder(localRead("getAll", syncedStore.getAll(items)), flowStorage, writeBackList());
     }
 
     @Override
-    public Flowable<Optional<List<T>>> getAll(final List<T> items) {
-        Flowable<Optional<List<T>>> flowStorage = dao.getAll(items);
+    public <S> Flowable<Optional<List<T>>> getByIds(final Collection<S> ids) {
+        final Flowable<Optional<List<T>>> flowStorage = remote("getByIds", dao.getByIds(ids));
 
         if (!hasSyncedStore()) {
             return flowStorage;
         }
 
-        final List<Flowable<Optional<List<T>>>> flowables = new ArrayList<>();
-        flowStorage = flowStorage.flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+        if (readPolicy == ReadPolicy.FIRST_HIT) {
+            final int expected = new HashSet<Object>(ids).size();
+            return firstHit(localRead("getByIds", syncedStore.getByIds(ids)), flowStorage.concatMap(writeBackList()), new Predicate<Optional<List<T>>>() {
+                @Override
+                public boolean test(Optional<List<T>> items) throws Exception {
+                    return !items.isNull() && items.get().size() >= expected;
+                }
+            });
+        }
+
+        return readInOrder(localRead("getByIds", syncedStore.getByIds(ids)), flowStorage, writeBackList());
+    }
+
+    /**
+     * Stream the items of the dao in pages, each page is written back to the synced store before being emitted
+     * @note    The synced store is not read and, even without filter, never cleaned up : the pages are partial results.
+     */
+    @Override
+    public Flowable<List<T>> stream(final Filter filter, final SortingMode sortingMode, final int pageSize) {
+        final Flowable<List<T>> pages = remote("stream", dao.stream(filter, sortingMode, pageSize));
+        if (!hasSyncedStore()) {
+            return pages;
+        }
+
+        return pages.concatMap(new Function<List<T>, Flowable<List<T>>>() {
             @Override
-            public Flowable<Optional<List<T>>> apply(Optional<List<T>> items) throws Exception {
-                return syncedStore.insertOrUpdate(items.get());
+            public Flowable<List<T>> apply(final List<T> page) throws Exception {
+                return writeBack(page).ignoreElements().andThen(Flowable.just(page));
             }
         });
-        flowables.add(syncedStore.getAll(items));
-        flowables.add(flowStorage);
+    }
+
+    /**
+     * Get a page from both stores, the page of the dao is written back to the synced store
+     */
+    @Override
+    public Flowable<Page<T>> getPage(final Filter filter, final SortingMode sortingMode, final Cursor cursor, final int pageSize) {
+        final Flowable<Page<T>> flowStorage = remote("getPage", dao.getPage(filter, sortingMode, cursor, pageSize));
+
+        if (!hasSyncedStore()) {
+            return flowStorage;
+        }
+
+        return readInOrder(localRead("getPage", syncedStore.getPage(filter, sortingMode, cursor, pageSize)), flowStorage,
+                new Function<Page<T>, Flowable<Page<T>>>() {
+                    @Override
+                    public Flowable<Page<T>> apply(Page<T> page) throws Exception {
+                        return writeBack(page.items).ignoreElements().andThen(Flowable.just(page));
+                    }
+                });
+    }
+
+    /**
+     * Changes of the dao of this Store, the synced store is not read
+     */
+    @Override
+    public Flowable<ChangeSet<T>> getChangesSince(final String token) {
+        return remote("getChangesSince", dao.getChangesSince(token));
+    }
+
+    /**
+     * Get the first items of an ordering from both stores
+     * @note    A limited result is partial : the synced store is never cleaned up, even without filter.
+     */
+    @Override
+    public Flowable<Optional<List<T>>> getAll(final Filter filter, final SortingMode sortingMode, final int limit) {
+        final QueryKey key = QueryKey.of("getAll", filter, sortingMode, limit);
+        final Flowable<Optional<List<T>>> flowable = coalesce(key, getAllFromStores(filter, sortingMode, limit));
+        if (queryCache != null) {
+            return queryCache.query(key, filter, flowable);
+        }
+        return flowable;
+    }
+
+    private Flowable<Optional<List<T>>> getAllFromStores(final Filter filter, final SortingMode sortingMode, final int limit) {
+        final Flowable<Optional<List<T>>> flowStorage = remote("getAll", dao.getAll(filter, sortingMode, limit));
+
+        if (!hasSyncedStore()) {
+            return flowStorage;
+        }
 
-        return Flowable.concat(flowables);
+        return readInOrder(localRead("getAll", syncedStore.getAll(filter, sortingMode, limit)), flowStorage, writeBackList());
     }
 
     public final Flowable<Optional<List<T>>> getAll(final Filter filter) {
@@ -150,44 +605,41 @@ public abstract class StoreService<T> extends StoreDao<T> {
 
     @Override
     public Flowable<Optional<T>> getOne(final Filter filter, final SortingMode sortingMode) {
-        Flowable<Optional<T>> flowStorage = dao.getOne(filter, sortingMode);
+        return getOne(filter, sortingMode, freshnessPolicy);
+    }
+
+    /**
+     * Get one item with specific freshness rules
+     * @param policy    null to always read the dao
+     */
+    public Flowable<Optional<T>> getOne(final Filter filter, final SortingMode sortingMode, final FreshnessPolicy policy) {
+        final QueryKey key = QueryKey.of("getOne", filter, sortingMode, 1);
+        return coalesce(key, getOneFromStores(key, filter, sortingMode, policy));
+    }
+
+    private Flowable<Optional<T>> getOneFromStores(final QueryKey key, final Filter filter, final SortingMode sortingMode, final FreshnessPolicy policy) {
+        final Flowable<Optional<T>> flowStorage = remote("getOne", dao.getOne(filter, sortingMode));
 
         if (!hasSyncedStore()) {
             return flowStorage;
         }
 
-        final List<Flowable<Optional<T>>> flowables = new ArrayList<>();
-        flowStorage = flowStorage.flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
-            @Override
-            public Flowable<Optional<T>> apply(Optional<T> item) throws Exception {
-                return syncedStore.insertOrUpdate(item.get());
-            }
-        });
-        flowables.add(syncedStore.getOne(filter, sortingMode));
-        flowables.add(flowStorage);
-
-        return Flowable.concat(flowables);
+        return readThrough(key, policy, localRead("getOne", syncedStore.getOne(filter, sortingMode)), flowStorage, writeBackOne());
     }
 
     @Override
     public Flowable<Optional<T>> getOne(final T item) {
-        Flowable<Optional<T>> flowStorage = dao.getOne(item);
+        final Flowable<Optional<T>> flowStorage = remote("getOne", dao.getOne(item));
 
         if (!hasSyncedStore()) {
             return flowStorage;
         }
 
-        final List<Flowable<Optional<T>>> flowables = new ArrayList<>();
-        flowStorage = flowStorage.flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
-            @Override
-            public Flowable<Optional<T>> apply(Optional<T> item) throws Exception {
-                return syncedStore.insertOrUpdate(item.get());
-            }
-        });
-        flowables.add(syncedStore.getOne(item));
-        flowables.add(flowStorage);
+        if (readPolicy == ReadPolicy.FIRST_HIT) {
+            return firstHit(localRead("getOne", syncedStore.getOne(item)), flowStorage.concatMap(writeBackOne()), this.<T>found());
+        }
 
-        return Flowable.concat(flowables);
+        return readInOrder(localRead("getOne", syncedStore.getOne(item)), flowStorage, writeBackOne());
     }
 
     public Flowable<Optional<T>> getOne(final Filter filter) {
@@ -204,29 +656,40 @@ public abstract class StoreService<T> extends StoreDao<T> {
 
     @Override
     public <S> Flowable<Optional<T>> getById(final S id) {
-        Flowable<Optional<T>> flowStorage = dao.getById(id);
+        return getById(id, freshnessPolicy);
+    }
+
+    /**
+     * Get an item by id with specific freshness rules
+     * @param policy    null to always read the dao
+     */
+    public <S> Flowable<Optional<T>> getById(final S id, final FreshnessPolicy policy) {
+        final QueryKey key = QueryKey.of("getById", id);
+        return coalesce(key, getByIdFromStores(key, id, policy));
+    }
+
+    private <S> Flowable<Optional<T>> getByIdFromStores(final QueryKey key, final S id, final FreshnessPolicy policy) {
+        final Flowable<Optional<T>> flowStorage = remote("getById", dao.getById(id));
         if (!hasSyncedStore()) {
             return flowStorage;
         }
 
-        final List<Flowable<Optional<T>>> flowables = new ArrayList<>();
-        flowStorage = flowStorage.flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
-            @Override
-            public Flowable<Optional<T>> apply(final Optional<T> item) throws Exception {
-                return syncedStore.insertOrUpdate(item.get());
-            }
-        });
-        flowables.add(syncedStore.getById(id));
-        flowables.add(flowStorage);
+        if (readPolicy == ReadPolicy.FIRST_HIT) {
+            return firstHit(localRead("getById", syncedStore.getById(id)), flowStorage.concatMap(writeBackOne()), this.<T>found());
+        }
 
-        return Flowable.concat(flowables);
+        return readThrough(key, policy, localRead("getById", syncedStore.getById(id)), flowStorage, writeBackOne());
     }
 
     @Override
     public Flowable<Optional<List<T>>> insert(final List<T> items) {
-        Flowable<Optional<List<T>>> flowStorage = dao.insert(items);
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(items, StoreService.<T>none(), StoreService.<T>none(), StoreService.<T>none()), Optional.wrap(items));
+        }
+
+        Flowable<Optional<List<T>>> flowStorage = remote("insert", dao.insert(items));
         if (!hasSyncedStore()) {
-            return flowStorage;
+            return invalidateQueries(flowStorage, items);
         }
 
         final List<Flowable<Optional<List<T>>>> flowables = new ArrayList<>();
@@ -234,7 +697,7 @@ public abstract class StoreService<T> extends StoreDao<T> {
                 .onErrorResumeNext(new Function<Throwable, Flowable<Optional<List<T>>>>() {
                     @Override
                     public Flowable<Optional<List<T>>> apply(final Throwable throwable) throws Exception {
-                        return syncedStore.delete(items).flatMap(new Function<Object, Flowable<Optional<List<T>>>>() {
+                        return localWrite("delete", syncedStore.delete(items)).flatMap(new Function<Object, Flowable<Optional<List<T>>>>() {
                             @Override
                             public Flowable<Optional<List<T>>> apply(Object o) throws Exception {
                                 return Flowable.error(throwable);
@@ -245,21 +708,25 @@ public abstract class StoreService<T> extends StoreDao<T> {
                 .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                     @Override
                     public Flowable<Optional<List<T>>> apply(Optional<List<T>> it) throws Exception {
-                        return syncedStore.insertOrUpdate(it.get());
+                        return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(it.get()));
                     }
                 });
 
-        flowables.add(syncedStore.insert(items));
+        flowables.add(localWrite("insert", syncedStore.insert(items)));
         flowables.add(flowStorage);
 
-        return Flowable.concat(flowables);
+        return invalidateQueries(Flowable.concat(flowables), items);
     }
 
     @Override
     public Flowable<Optional<T>> insert(final T item) {
-        Flowable<Optional<T>> flowStorage = dao.insert(item);
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(Collections.singletonList(item), StoreService.<T>none(), StoreService.<T>none(), StoreService.<T>none()), Optional.wrap(item));
+        }
+
+        Flowable<Optional<T>> flowStorage = remote("insert", dao.insert(item));
         if (!hasSyncedStore()) {
-            return flowStorage;
+            return invalidateQueries(flowStorage, Collections.singletonList(item));
         }
 
         final List<Flowable<Optional<T>>> flowables = new ArrayList<>();
@@ -267,7 +734,7 @@ public abstract class StoreService<T> extends StoreDao<T> {
                 .onErrorResumeNext(new Function<Throwable, Flowable<Optional<T>>>() {
                     @Override
                     public Flowable<Optional<T>> apply(final Throwable throwable) throws Exception {
-                        return syncedStore.delete(item).flatMap(new Function<Integer, Flowable<Optional<T>>>() {
+                        return localWrite("delete", syncedStore.delete(item)).flatMap(new Function<Integer, Flowable<Optional<T>>>() {
                             @Override
                             public Flowable<Optional<T>> apply(Integer zeroOrOne) throws Exception {
                                 return Flowable.error(throwable);
@@ -278,235 +745,335 @@ public abstract class StoreService<T> extends StoreDao<T> {
                 .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
                     @Override
                     public Flowable<Optional<T>> apply(Optional<T> it) throws Exception {
-                        return syncedStore.insertOrUpdate(it.get());
+                        return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(it.get()));
                     }
                 });
 
-        flowables.add(syncedStore.insert(item));
+        flowables.add(localWrite("insert", syncedStore.insert(item)));
         flowables.add(flowStorage);
 
-        return Flowable.concat(flowables);
+        return invalidateQueries(Flowable.concat(flowables), Collections.singletonList(item));
     }
 
     @Override
     public Flowable<Optional<List<T>>> insertOrUpdate(final List<T> items) {
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(items, StoreService.<T>none()), Optional.wrap(items));
+        }
+
         Flowable<Optional<List<T>>> flowStorage;
 
         if (hasSyncedStore()) {
-            flowStorage = syncedStore.getAll(items) // try to get a copy before trying to update/insert
-                    .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+            flowStorage = localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(items)) // the replaced versions are kept to undo the write
+                    .concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                         @Override
-                        public Flowable<Optional<List<T>>> apply(final Optional<List<T>> originalItems) {
+                        public Flowable<Optional<List<T>>> apply(final Optional<List<T>> previous) {
+                            final RollbackJournal<T> journal = new RollbackJournal<>(items, previous);
                             return Flowable.concat(
-                                    syncedStore.insertOrUpdate(items),
-                                    dao.insertOrUpdate(items)
-                                            .onErrorResumeNext(new Function<Throwable, Flowable<Optional<List<T>>>>() {
-                                                @Override
-                                                public Flowable<Optional<List<T>>> apply(final Throwable throwable) {
-                                                    if (originalItems.isNull() || originalItems.get().size() == 0) {
-                                                        return syncedStore.delete(items).flatMap(new Function<Integer, Flowable<Optional<List<T>>>>() {
-                                                            @Override
-                                                            public Flowable<Optional<List<T>>> apply(Integer notUsed) {
-                                                                return Flowable.error(throwable);
-                                                            }
-                                                        });
-                                                    } else {
-                                                        return syncedStore.delete(items)
-                                                                .flatMap(new Function<Integer, Flowable<Optional<List<T>>>>() {
-                                                                    @Override
-                                                                    public Flowable<Optional<List<T>>> apply(Integer deleteCount) throws Exception {
-                                                                        return syncedStore.insertOrUpdate(originalItems.get());
-                                                                    }
-                                                                })
-                                                                .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
-                                                                    @Override
-                                                                    public Flowable<Optional<List<T>>> apply(Optional<List<T>> notUsed) {
-                                                                        return Flowable.error(throwable);
-                                                                    }
-                                                                });
-                                                    }
-                                                }
-                                            })
+                                    Flowable.just(Optional.wrap(items)),
+                                    remote("insertOrUpdate", dao.insertOrUpdate(items))
+                                            .onErrorResumeNext(StoreService.this.<Optional<List<T>>>undo("insertOrUpdate", journal))
                                             .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                                                 @Override
                                                 public Flowable<Optional<List<T>>> apply(Optional<List<T>> itemInsertedOrUpdated) {
-                                                    return syncedStore.insertOrUpdate(itemInsertedOrUpdated.get());
+                                                    return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(itemInsertedOrUpdated.get()));
                                                 }
                                             })
                             );
                         }
                     });
         } else {
-            flowStorage = dao.insertOrUpdate(items);
+            flowStorage = remote("insertOrUpdate", dao.insertOrUpdate(items));
         }
 
-        return flowStorage;
+        return invalidateQueries(flowStorage, items);
     }
 
     @Override
     public Flowable<Optional<T>> insertOrUpdate(final T item) {
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(Collections.singletonList(item), StoreService.<T>none()), Optional.wrap(item));
+        }
+
         Flowable<Optional<T>> flowStorage;
 
         if (hasSyncedStore()) {
-            flowStorage = syncedStore.getOne(item) // get a copy before trying to update/insert
-                    .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
+            flowStorage = localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(item)) // the replaced version is kept to undo the write
+                    .concatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
                         @Override
-                        public Flowable<Optional<T>> apply(final Optional<T> originalItem) throws Exception {
+                        public Flowable<Optional<T>> apply(final Optional<T> previous) throws Exception {
+                            final RollbackJournal<T> journal = RollbackJournal.of(item, previous);
                             return Flowable.concat(
-                                    syncedStore.insertOrUpdate(item),
-                                    dao.insertOrUpdate(item)
-                                            .onErrorResumeNext(new Function<Throwable, Flowable<Optional<T>>>() {
-                                                @Override
-                                                public Flowable<Optional<T>> apply(final Throwable throwable) throws Exception {
-                                                    // the item did not exist before
-                                                    if (originalItem.isNull()) {
-                                                        return syncedStore.delete(item).flatMap(new Function<Integer, Flowable<Optional<T>>>() {
-                                                            @Override
-                                                            public Flowable<Optional<T>> apply(Integer notUsed) throws Exception {
-                                                                return Flowable.error(throwable);
-                                                            }
-                                                        });
-                                                    } else { // it did exists, re-apply previous version
-                                                        return syncedStore.delete(item)
-                                                                .flatMap(new Function<Integer, Flowable<Optional<T>>>() {
-                                                                    @Override
-                                                                    public Flowable<Optional<T>> apply(Integer integer) throws Exception {
-                                                                        return syncedStore.insertOrUpdate(originalItem.get());
-                                                                    }
-                                                                })
-                                                                .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
-                                                                    @Override
-                                                                    public Flowable<Optional<T>> apply(Optional<T> notUsed) throws Exception {
-                                                                        return Flowable.error(throwable);
-                                                                    }
-                                                                });
-                                                    }
-                                                }
-                                            })
+                                    Flowable.just(Optional.wrap(item)),
+                                    remoteInsertOrUpdate(item, journal)
                                             .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
                                                 @Override
                                                 public Flowable<Optional<T>> apply(Optional<T> itemInsertedOrUpdated) throws Exception {
-                                                    return syncedStore.insertOrUpdate(itemInsertedOrUpdated.get());
+                                                    return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(itemInsertedOrUpdated.get()));
                                                 }
                                             })
                             );
                         }
                     });
         } else {
-            flowStorage = dao.insertOrUpdate(item);
+            flowStorage = remoteInsertOrUpdate(item, null);
         }
 
-        return flowStorage;
+        return invalidateQueries(flowStorage, Collections.singletonList(item));
     }
 
     @Override
     public Flowable<Optional<List<T>>> update(final List<T> items) {
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(StoreService.<T>none(), items, StoreService.<T>none(), StoreService.<T>none()), Optional.wrap(items));
+        }
+
         Flowable<Optional<List<T>>> flowStorage;
 
         if (hasSyncedStore()) {
-            flowStorage = syncedStore.getAll(items) // try to get a copy before trying to update/insert
-                    .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+            final Set<Object> ids = idsOf(items);
+            final int expected = ids == null ? items.size() : ids.size();
+            flowStorage = existing(items) // checked before writing : a missing item is never written, even for a while
+                    .concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                         @Override
-                        public Flowable<Optional<List<T>>> apply(final Optional<List<T>> originalItems) {
-                            if (originalItems.isNull() || originalItems.get().size() < items.size()) {
+                        public Flowable<Optional<List<T>>> apply(Optional<List<T>> existing) {
+                            if ((existing.isNull() ? 0 : existing.get().size()) < expected) {
                                 return Flowable.error(new IllegalArgumentException(
                                         "One or many items do not exist and can't be updated. Please use insertOrUpdate if this behaviour is not expected !"
                                 ));
                             }
-
+                            return localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(items)); // the replaced versions are kept to undo the write
+                        }
+                    })
+                    .concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+                        @Override
+                        public Flowable<Optional<List<T>>> apply(final Optional<List<T>> previous) {
+                            final RollbackJournal<T> journal = new RollbackJournal<>(items, previous);
                             return Flowable.concat(
-                                    syncedStore.update(items),
-                                    dao.update(items)
-                                            .onErrorResumeNext(new Function<Throwable, Flowable<Optional<List<T>>>>() {
-                                                @Override
-                                                public Flowable<Optional<List<T>>> apply(final Throwable throwable) {
-                                                    return syncedStore.delete(items)
-                                                            .flatMap(new Function<Integer, Flowable<Optional<List<T>>>>() {
-                                                                @Override
-                                                                public Flowable<Optional<List<T>>> apply(Integer deleteCount) throws Exception {
-                                                                    return syncedStore.insert(originalItems.get());
-                                                                }
-                                                            })
-                                                            .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
-                                                                @Override
-                                                                public Flowable<Optional<List<T>>> apply(Optional<List<T>> notUsed) {
-                                                                    return Flowable.error(throwable);
-                                                                }
-                                                            });
-                                                }
-                                            })
+                                    Flowable.just(Optional.wrap(items)),
+                                    remote("update", dao.update(items))
+                                            .onErrorResumeNext(StoreService.this.<Optional<List<T>>>undo("update", journal))
                                             .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                                                 @Override
                                                 public Flowable<Optional<List<T>>> apply(Optional<List<T>> itemsUpdated) {
-                                                    return syncedStore.update(itemsUpdated.get());
+                                                    return localWrite("update", syncedStore.update(itemsUpdated.get()));
                                                 }
                                             })
                             );
                         }
                     });
         } else {
-            flowStorage = dao.insertOrUpdate(items);
+            flowStorage = remote("insertOrUpdate", dao.insertOrUpdate(items));
         }
 
-        return flowStorage;
+        return invalidateQueries(flowStorage, items);
     }
 
     @Override
     public Flowable<Optional<T>> update(final T item) {
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(StoreService.<T>none(), Collections.singletonList(item), StoreService.<T>none(), StoreService.<T>none()), Optional.wrap(item));
+        }
+
         Flowable<Optional<T>> flowStorage;
 
         if (hasSyncedStore()) {
-            flowStorage = syncedStore.getOne(item) // get a copy before trying to update/insert
-                    .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
+            flowStorage = existing(Collections.singletonList(item)) // checked before writing : a missing item is never written
+                    .concatMap(new Function<Optional<List<T>>, Flowable<Optional<T>>>() {
                         @Override
-                        public Flowable<Optional<T>> apply(final Optional<T> originalItem) throws Exception {
-                            if (originalItem.isNull()) {
+                        public Flowable<Optional<T>> apply(Optional<List<T>> existing) throws Exception {
+                            if (existing.isNull() || existing.get().isEmpty()) {
                                 return Flowable.error(new IllegalArgumentException(
                                         "This item does not exists and can't be updated. Please use insertOrUpdate if this behaviour is not expected !"
                                 ));
                             }
-
+                            return localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(item)); // the replaced version is kept to undo the write
+                        }
+                    })
+                    .concatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
+                        @Override
+                        public Flowable<Optional<T>> apply(final Optional<T> previous) throws Exception {
+                            final RollbackJournal<T> journal = RollbackJournal.of(item, previous);
                             return Flowable.concat(
-                                    syncedStore.update(item),
-                                    dao.update(item)
-                                            .onErrorResumeNext(new Function<Throwable, Flowable<Optional<T>>>() {
-                                                @Override
-                                                public Flowable<Optional<T>> apply(final Throwable throwable) throws Exception {
-                                                    return syncedStore.delete(item)
-                                                            .flatMap(new Function<Integer, Flowable<Optional<T>>>() {
-                                                                @Override
-                                                                public Flowable<Optional<T>> apply(Integer integer) throws Exception {
-                                                                    return syncedStore.insert(originalItem.get());
-                                                                }
-                                                            })
-                                                            .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
-                                                                @Override
-                                                                public Flowable<Optional<T>> apply(Optional<T> notUsed) throws Exception {
-                                                                    return Flowable.error(throwable);
-                                                                }
-                                                            });
-                                                }
-                                            })
+                                    Flowable.just(Optional.wrap(item)),
+                                    remoteUpdate(item, journal)
                                             .flatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
                                                 @Override
                                                 public Flowable<Optional<T>> apply(Optional<T> itemUpdated) throws Exception {
-                                                    return syncedStore.update(itemUpdated.get());
+                                                    return localWrite("update", syncedStore.update(itemUpdated.get()));
                                                 }
                                             })
                             );
                         }
                     });
         } else {
-            flowStorage = dao.update(item);
+            flowStorage = remoteUpdate(item, null);
         }
 
-        return flowStorage;
+        return invalidateQueries(flowStorage, Collections.singletonList(item));
+    }
+
+    /**
+     * Write the items and give the versions they replaced
+     * @note    With a synced store the previous versions are the ones of the dao (the slowest tier), returned by its
+     *          write. The local write is undone if the dao fails. When the dao write is deferred (local acknowledgement,
+     *          write-behind) the versions of the closest store are given.
+     */
+    @Override
+    public Flowable<Optional<List<T>>> insertOrUpdateReturningPrevious(final List<T> items) {
+        if (!hasSyncedStore()) {
+            return invalidateQueries(remote("insertOrUpdateReturningPrevious", dao.insertOrUpdateReturningPrevious(items)), items);
+        }
+        if (isLocalAck()) {
+            return snapshot(items)
+                    .concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+                        @Override
+                        public Flowable<Optional<List<T>>> apply(Optional<List<T>> previous) throws Exception {
+                            return insertOrUpdate(items).ignoreElements().andThen(Flowable.just(previous));
+                        }
+                    });
+        }
+
+        final Flowable<Optional<List<T>>> flowStorage = localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(items))
+                .concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+                    @Override
+                    public Flowable<Optional<List<T>>> apply(Optional<List<T>> previous) {
+                        return undoingOnError("insertOrUpdateReturningPrevious",
+                                remote("insertOrUpdateReturningPrevious", dao.insertOrUpdateReturningPrevious(items)),
+                                new RollbackJournal<>(items, previous));
+                    }
+                });
+        return invalidateQueries(flowStorage, items);
+    }
+
+    @Override
+    public Flowable<Optional<T>> insertOrUpdateReturningPrevious(final T item) {
+        if (!hasSyncedStore()) {
+            return invalidateQueries(remote("insertOrUpdateReturningPrevious", dao.insertOrUpdateReturningPrevious(item)), Collections.singletonList(item));
+        }
+        if (isLocalAck() || writeBehindQueue != null) { // the dao write is deferred : the local version is given
+            return super.insertOrUpdateReturningPrevious(item);
+        }
+
+        final Flowable<Optional<T>> flowStorage = localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(item))
+                .concatMap(new Function<Optional<T>, Flowable<Optional<T>>>() {
+                    @Override
+                    public Flowable<Optional<T>> apply(Optional<T> previous) throws Exception {
+                        return undoingOnError("insertOrUpdateReturningPrevious",
+                                remote("insertOrUpdateReturningPrevious", dao.insertOrUpdateReturningPrevious(item)),
+                                RollbackJournal.of(item, previous));
+                    }
+                });
+        return invalidateQueries(flowStorage, Collections.singletonList(item));
+    }
+
+    /**
+     * Start a unit of work : writes collected then applied in a single batch by commit()
+     * @note    The primary key of the items must be declared with withKeyExtractor.
+     */
+    public UnitOfWork<T> transaction() {
+        return new UnitOfWork<>(this, requireKeyExtractor("A unit of work"));
+    }
+
+    /**
+     * Apply a batch on both stores, the synced store being restored if the dao fails
+     */
+    @Override
+    public Flowable<WriteBatch<T>> applyBatch(final WriteBatch<T> batch) {
+        final Set<Object> updatedKeys = idsOf(batch.updates);
+        return commit(batch, updatedKeys == null ? Collections.<Object>emptySet() : updatedKeys);
+    }
+
+    /**
+     * Commit a batch : written to the synced store (the versions replaced or deleted are kept in a single journal),
+     * then sent to the dao with applyBatch, or journaled in the outbox with local-ack writes
+     * @param updatedKeys   Keys of the items that must already exist in the synced store
+     */
+    Flowable<WriteBatch<T>> commit(final WriteBatch<T> batch, final Set<Object> updatedKeys) {
+        if (batch.isEmpty()) {
+            return Flowable.just(batch);
+        }
+        if (!hasSyncedStore()) {
+            return invalidateQueries(remote("applyBatch", dao.applyBatch(batch)), batch.items());
+        }
+
+        final Flowable<Optional<List<T>>> updatedVersions = updatedKeys.isEmpty()
+                ? Flowable.just(Optional.wrap(Collections.<T>emptyList()))
+                : existing(batch.updates);
+        final Flowable<Optional<List<T>>> deletedVersions = batch.deletes.isEmpty()
+                ? Flowable.just(Optional.wrap(Collections.<T>emptyList()))
+                : snapshot(batch.deletes);
+        final Flowable<WriteBatch<T>> flowStorage = updatedVersions.concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+            @Override
+            public Flowable<Optional<List<T>>> apply(Optional<List<T>> existing) throws Exception {
+                // checked before writing : a missing item is never written, even for a while
+                if (!idsOf(existing.isNull() ? Collections.<T>emptyList() : existing.get()).containsAll(updatedKeys)) {
+                    return Flowable.error(new IllegalArgumentException(
+                            "One or many items do not exist and can't be updated. Please use insertOrUpdate if this behaviour is not expected !"
+                    ));
+                }
+                return deletedVersions;
+            }
+        }).concatMap(new Function<Optional<List<T>>, Flowable<WriteBatch<T>>>() {
+            @Override
+            public Flowable<WriteBatch<T>> apply(final Optional<List<T>> deleted) throws Exception {
+                final List<T> written = batch.written();
+                final Flowable<Optional<List<T>>> upserts = written.isEmpty()
+                        ? Flowable.just(Optional.wrap(Collections.<T>emptyList()))
+                        : localWrite("insertOrUpdateReturningPrevious", syncedStore.insertOrUpdateReturningPrevious(written));
+
+                return upserts.concatMap(new Function<Optional<List<T>>, Flowable<WriteBatch<T>>>() {
+                    @Override
+                    public Flowable<WriteBatch<T>> apply(Optional<List<T>> replaced) throws Exception {
+                        final List<T> previous = new ArrayList<>();
+                        if (!replaced.isNull()) {
+                            previous.addAll(replaced.get());
+                        }
+                        if (!deleted.isNull()) {
+                            previous.addAll(deleted.get());
+                        }
+                        final RollbackJournal<T> journal = new RollbackJournal<>(written, Optional.wrap(previous));
+                        final Completable localDeletes = batch.deletes.isEmpty()
+                                ? Completable.complete()
+                                : localWrite("delete", syncedStore.delete(batch.deletes)).ignoreElements();
+                        if (isLocalAck()) {
+                            // acknowledged once journaled, the synced store is restored if the outbox can't be written
+                            return localDeletes.andThen(localWrite("outbox", outboxRelay.submit(batch))
+                                    .onErrorResumeNext(new Function<Throwable, Completable>() {
+                                        @Override
+                                        public Completable apply(Throwable throwable) throws Exception {
+                                            return rollback("outbox", journal).andThen(Completable.error(throwable));
+                                        }
+                                    }))
+                                    .andThen(Flowable.just(batch));
+                        }
+                        return localDeletes.andThen(Flowable.concat(
+                                Flowable.just(batch),
+                                remote("applyBatch", dao.applyBatch(batch))
+                                        .onErrorResumeNext(StoreService.this.<WriteBatch<T>>undo("applyBatch", journal))
+                                        .concatMap(new Function<WriteBatch<T>, Flowable<WriteBatch<T>>>() {
+                                            @Override
+                                            public Flowable<WriteBatch<T>> apply(WriteBatch<T> applied) throws Exception {
+                                                final List<T> writtenByDao = applied.written();
+                                                if (writtenByDao.isEmpty()) {
+                                                    return Flowable.just(applied);
+                                                }
+                                                return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(writtenByDao)).ignoreElements().andThen(Flowable.just(applied));
+                                            }
+                                        })
+                        ));
+                    }
+                });
+            }
+        });
+
+        return invalidateQueries(flowStorage, batch.items());
     }
 
     @Override
     public Flowable<Integer> deleteAll() {
         List<Flowable<Integer>> flowables = new ArrayList<>();
-        Flowable<Integer> flowStorage = dao.deleteAll();
+        Flowable<Integer> flowStorage = remote("deleteAll", dao.deleteAll());
 
         // TODO improve the deleteAll method in case of double fail
         // copy the syncedStore for insert if double fail
@@ -520,11 +1087,11 @@ public abstract class StoreService<T> extends StoreDao<T> {
                     .onErrorResumeNext(new Function<Throwable, Flowable<Integer>>() {
                         @Override
                         public Flowable<Integer> apply(final Throwable throwable) throws Exception {
-                            return dao.getAll(null, null)
+                            return remote("getAll", dao.getAll(null, null))
                                     .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
                                         @Override
                                         public Flowable<Optional<List<T>>> apply(final Optional<List<T>> items) throws Exception {
-                                            return syncedStore.insertOrUpdate(items.get());
+                                            return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(items.get()));
                                         }
                                     })
                                     .flatMap(new Function<Optional<List<T>>, Flowable<Integer>>() {
@@ -536,24 +1103,28 @@ public abstract class StoreService<T> extends StoreDao<T> {
                         }
                     });
 
-            flowables.add(syncedStore.deleteAll());
+            flowables.add(localWrite("deleteAll", syncedStore.deleteAll()));
         }
 
         flowables.add(flowStorage);
-        return Flowable.concat(flowables);
+        return invalidateQueries(Flowable.concat(flowables), null);
     }
 
     @Override
     public Flowable<Integer> delete(final List<T> items) {
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(StoreService.<T>none(), items), items.size());
+        }
+
         List<Flowable<Integer>> flowables = new ArrayList<>();
-        Flowable<Integer> flowStorage = dao.delete(items);
+        Flowable<Integer> flowStorage = remote("delete", dao.delete(items));
 
         if (hasSyncedStore()) {
             flowStorage = flowStorage
                     .onErrorResumeNext(new Function<Throwable, Flowable<Integer>>() {
                         @Override
                         public Flowable<Integer> apply(final Throwable throwable) throws Exception {
-                            return syncedStore.insertOrUpdate(items)
+                            return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(items))
                                     .flatMap(new Function<Optional<List<T>>, Flowable<Integer>>() {
                                         @Override
                                         public Flowable<Integer> apply(Optional<List<T>> reinsertedItem) throws Exception {
@@ -563,24 +1134,28 @@ public abstract class StoreService<T> extends StoreDao<T> {
                         }
                     });
 
-            flowables.add(syncedStore.delete(items));
+            flowables.add(localWrite("delete", syncedStore.delete(items)));
         }
 
         flowables.add(flowStorage);
-        return Flowable.concat(flowables);
+        return invalidateQueries(Flowable.concat(flowables), items);
     }
 
     @Override
     public Flowable<Integer> delete(final T item) {
+        if (isLocalAck()) {
+            return localAck(new WriteBatch<>(StoreService.<T>none(), Collections.singletonList(item)), 1);
+        }
+
         List<Flowable<Integer>> flowables = new ArrayList<>();
-        Flowable<Integer> flowStorage = dao.delete(item);
+        Flowable<Integer> flowStorage = remote("delete", dao.delete(item));
 
         if (hasSyncedStore()) {
             flowStorage = flowStorage
                     .onErrorResumeNext(new Function<Throwable, Flowable<Integer>>() {
                         @Override
                         public Flowable<Integer> apply(final Throwable throwable) throws Exception {
-                            return syncedStore.insertOrUpdate(item)
+                            return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(item))
                                     .flatMap(new Function<Optional<T>, Flowable<Integer>>() {
                                         @Override
                                         public Flowable<Integer> apply(Optional<T> reinsertedItem) throws Exception {
@@ -591,10 +1166,487 @@ public abstract class StoreService<T> extends StoreDao<T> {
                         }
                     });
 
-            flowables.add(syncedStore.delete(item));
+            flowables.add(localWrite("delete", syncedStore.delete(item)));
         }
 
         flowables.add(flowStorage);
-        return Flowable.concat(flowables);
+        return invalidateQueries(Flowable.concat(flowables), Collections.singletonList(item));
+    }
+
+    /**
+     * Read the synced store then the dao, according to freshness rules
+     * @param policy    null to always read the dao
+     */
+    private <R> Flowable<R> readThrough(final QueryKey key, final FreshnessPolicy policy, final Flowable<R> local,
+                                        final Flowable<R> fetch, final Function<R, Flowable<R>> writeBack) {
+        if (policy == null) {
+            return readInOrder(local, fetch, writeBack);
+        }
+
+        return Flowable.defer(new Callable<Publisher<R>>() {
+            @Override
+            public Publisher<R> call() throws Exception {
+                final Action recordRefresh = new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        freshnessTracker.recordRefresh(key);
+                    }
+                };
+
+                final long age = freshnessTracker.age(key);
+                if (age < policy.maxAgeNanos) {
+                    return local; // fresh enough
+                }
+                if (age - policy.maxAgeNanos < policy.staleWhileRevalidateNanos) {
+                    // stale : emitted now and refreshed in background
+                    final Flowable<R> refresh = fetch.concatMap(writeBack).doOnComplete(recordRefresh);
+                    return local.doOnComplete(new Action() {
+                        @Override
+                        public void run() throws Exception {
+                            final DisposableSubscriber<R> subscriber = new DisposableSubscriber<R>() {
+                                @Override
+                                public void onNext(R value) {
+                                }
+
+                                @Override
+                                public void onError(Throwable throwable) {
+                                    compositeDisposable.delete(this);
+                                }
+
+                                @Override
+                                public void onComplete() {
+                                    compositeDisposable.delete(this);
+                                }
+                            };
+                            // added first : a synchronous refresh terminates within subscribe
+                            compositeDisposable.add(subscriber);
+                            refresh.subscribe(subscriber);
+                        }
+                    });
+                }
+                if (!policy.staleIfError) {
+                    return readInOrder(local, fetch, writeBack).doOnComplete(recordRefresh);
+                }
+
+                // decided once the local emissions are delivered, the dao may fail first with parallel reads
+                final AtomicBoolean hasLocalData = new AtomicBoolean(false);
+                final AtomicReference<Throwable> localError = new AtomicReference<>();
+                return readInOrder(
+                        local.doOnNext(new Consumer<R>() {
+                            @Override
+                            public void accept(R value) throws Exception {
+                                if (hasData(value)) {
+                                    hasLocalData.set(true);
+                                }
+                            }
+                        }).doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(Throwable throwable) throws Exception {
+                                localError.set(throwable);
+                            }
+                        }),
+                        fetch,
+                        writeBack
+                ).doOnComplete(recordRefresh).onErrorResumeNext(new Function<Throwable, Publisher<R>>() {
+                    @Override
+                    public Publisher<R> apply(Throwable throwable) throws Exception {
+                        final boolean stale = throwable != localError.get() && hasLocalData.get();
+                        return stale ? Flowable.<R>empty() : Flowable.<R>error(throwable);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Emit the synced store then the dao, the results of the dao being written back to the synced store
+     * With parallel reads the dao is fetched while the synced store is read, its results are replayed and written
+     * back once the synced store terminated : the local read never sees a write-back of the same request, and an
+     * error of the dao comes last as with a sequential read. The fetch is cancelled if the subscriber cancels first.
+     */
+    private <R> Flowable<R> readInOrder(final Flowable<R> local, final Flowable<R> fetch, final Function<R, Flowable<R>> writeBack) {
+        if (!parallelReads) {
+            return Flowable.concat(local, fetch.concatMap(writeBack));
+        }
+        final Scheduler scheduler = executionPolicy.remote == null ? Schedulers.io() : executionPolicy.remote;
+        return Flowable.defer(new Callable<Publisher<R>>() {
+            @Override
+            public Publisher<R> call() throws Exception {
+                // a synchronous dao must not block the caller before the synced store is read, and the replay only
+                // requests what its subscribers do : the buffer pulls the dao before the write-back subscribes
+                final ConnectableFlowable<R> early = fetch.subscribeOn(scheduler).onBackpressureBuffer().replay();
+                final AtomicReference<Disposable> connection = new AtomicReference<>();
+                return Flowable.concat(
+                        local.doOnSubscribe(new Consumer<Subscription>() {
+                            @Override
+                            public void accept(Subscription subscription) throws Exception {
+                                connection.set(early.connect());
+                            }
+                        }),
+                        early.concatMap(writeBack)
+                ).doFinally(new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        final Disposable disposable = connection.get();
+                        if (disposable != null) {
+                            disposable.dispose();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static boolean hasData(Object value) {
+        if (!(value instanceof Optional) || ((Optional<?>) value).isNull()) {
+            return false;
+        }
+        final Object content = ((Optional<?>) value).get();
+        return !(content instanceof Collection) || !((Collection<?>) content).isEmpty();
+    }
+
+    /**
+     * Emit the first result of the synced store accepted as a hit, or read the dao if there is none
+     */
+    private <R> Flowable<R> firstHit(Flowable<R> synced, Flowable<R> flowStorage, Predicate<R> hit) {
+        return synced.filter(hit).take(1).switchIfEmpty(flowStorage);
+    }
+
+    private <R> Predicate<Optional<R>> found() {
+        return new Predicate<Optional<R>>() {
+            @Override
+            public boolean test(Optional<R> item) throws Exception {
+                return !item.isNull();
+            }
+        };
+    }
+
+    /**
+     * Replace the content of the synced store with a fresh version of all the items
+     * Only the differences are written with a content hasher, or while local-ack writes are pending (they are kept).
+     */
+    private Flowable<Optional<List<T>>> replaceAll(final List<T> items) {
+        if (contentHasher != null || hasPendingWrites()) {
+            return reconcile(items);
+        }
+        return localWrite("deleteAll", syncedStore.deleteAll()).flatMap(new Function<Integer, Flowable<Optional<List<T>>>>() {
+            @Override
+            public Flowable<Optional<List<T>>> apply(Integer integer) throws Exception {
+                return writeBack(items);
+            }
+        });
+    }
+
+    /**
+     * Write the differences between the synced store and a fresh version of all the items
+     * @note    Without content hasher every item found in both is updated.
+     */
+    private Flowable<Optional<List<T>>> reconcile(final List<T> items) {
+        return localRead("getAll", syncedStore.getDao().getAll(null, null))
+                .flatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+                    @Override
+                    public Flowable<Optional<List<T>>> apply(Optional<List<T>> current) throws Exception {
+                        final Reconciliation<T> diff = Reconciliation.diff(
+                                current.isNull() ? Collections.<T>emptyList() : current.get(),
+                                items, keyExtractor, contentHasher
+                        );
+                        final List<T> toDelete = withoutPendingWrites(diff.toDelete);
+                        final List<T> toInsert = withoutPendingWrites(diff.toInsert);
+                        final List<T> toUpdate = withoutPendingWrites(diff.toUpdate);
+
+                        final List<Completable> writes = new ArrayList<>();
+                        if (!toDelete.isEmpty()) {
+                            writes.add(localWrite("delete", syncedStore.delete(toDelete)).ignoreElements());
+                        }
+                        if (!toInsert.isEmpty()) {
+                            writes.add(localWrite("insert", syncedStore.insert(toInsert)).ignoreElements());
+                        }
+                        if (!toUpdate.isEmpty()) {
+                            writes.add(localWrite("update", syncedStore.update(toUpdate)).ignoreElements());
+                        }
+                        return Completable.concat(writes).andThen(Flowable.just(Optional.wrap(items)));
+                    }
+                });
+    }
+
+    private boolean isLocalAck() {
+        return outboxRelay != null && hasSyncedStore();
+    }
+
+    /**
+     * Whether local-ack writes wait in the outbox : the synced store then has newer versions than the dao
+     */
+    private boolean hasPendingWrites() {
+        return isLocalAck() && outboxRelay.hasPendingWrites();
+    }
+
+    private List<T> withoutPendingWrites(List<T> items) {
+        return isLocalAck() ? outboxRelay.withoutPendingWrites(items) : items;
+    }
+
+    /**
+     * Write back to the synced store items read from the dao, except the items with local-ack writes not delivered
+     * yet : their version in the synced store is newer. The items read are emitted in any case.
+     */
+    private Flowable<Optional<List<T>>> writeBack(final List<T> items) {
+        final List<T> fresh = withoutPendingWrites(items);
+        if (fresh.size() == items.size()) {
+            return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(items));
+        }
+        final Flowable<Optional<List<T>>> read = Flowable.just(Optional.wrap(items));
+        return fresh.isEmpty() ? read : localWrite("insertOrUpdate", syncedStore.insertOrUpdate(fresh)).ignoreElements().andThen(read);
+    }
+
+    private Flowable<Optional<T>> writeBack(final T item) {
+        if (isLocalAck() && outboxRelay.isPending(keyExtractor.getKey(item))) {
+            return Flowable.just(Optional.wrap(item));
+        }
+        return localWrite("insertOrUpdate", syncedStore.insertOrUpdate(item));
+    }
+
+    /**
+     * Versions of the items in the synced store, read on its own dao only : a snapshot keeps a single emission and
+     * must not start a read of the tiers below that it would cancel at once
+     */
+    private Flowable<Optional<List<T>>> snapshot(List<T> items) {
+        final Set<Object> ids = idsOf(items);
+        return (ids == null
+                ? localRead("getAll", syncedStore.getDao().getAll(items))
+                : localRead("getByIds", syncedStore.getDao().getByIds(ids))).take(1);
+    }
+
+    /**
+     * Read the items to update : from the synced store, or from the dao for the ones evicted from a cache store
+     */
+    private Flowable<Optional<List<T>>> existing(final List<T> items) {
+        if (!(syncedStore.getDao() instanceof CacheStoreDao)) {
+            return snapshot(items);
+        }
+        final Set<Object> ids = idsOf(items);
+        final int expected = ids == null ? items.size() : ids.size();
+        return snapshot(items).concatMap(new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+            @Override
+            public Flowable<Optional<List<T>>> apply(Optional<List<T>> cached) throws Exception {
+                if ((cached.isNull() ? 0 : cached.get().size()) >= expected) {
+                    return Flowable.just(cached);
+                }
+                return (ids == null
+                        ? remote("getAll", dao.getAll(items))
+                        : remote("getByIds", dao.getByIds(ids))).take(1);
+            }
+        });
+    }
+
+    private Function<Optional<List<T>>, Flowable<Optional<List<T>>>> writeBackList() {
+        return new Function<Optional<List<T>>, Flowable<Optional<List<T>>>>() {
+            @Override
+            public Flowable<Optional<List<T>>> apply(Optional<List<T>> items) throws Exception {
+                return writeBack(items.get());
+            }
+        };
+    }
+
+    private Function<Optional<T>, Flowable<Optional<T>>> writeBackOne() {
+        return new Function<Optional<T>, Flowable<Optional<T>>>() {
+            @Override
+            public Flowable<Optional<T>> apply(Optional<T> item) throws Exception {
+                if (item.isNull()) {
+                    return Flowable.just(item); // nothing to write back
+                }
+                return writeBack(item.get());
+            }
+        };
+    }
+
+    /**
+     * Local-ack write : committed on the synced store and journaled in the outbox, then acknowledged with a result
+     */
+    private <R> Flowable<R> localAck(WriteBatch<T> writes, final R result) {
+        return commit(writes, idsOf(writes.updates)).map(new Function<WriteBatch<T>, R>() {
+            @Override
+            public R apply(WriteBatch<T> committed) throws Exception {
+                return result;
+            }
+        });
+    }
+
+    private static <T> List<T> none() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Undo a write on the synced store then forward the error of the dao
+     */
+    private <R> Function<Throwable, Flowable<R>> undo(final String operation, final RollbackJournal<T> journal) {
+        return new Function<Throwable, Flowable<R>>() {
+            @Override
+            public Flowable<R> apply(Throwable throwable) throws Exception {
+                return rollback(operation, journal).andThen(Flowable.<R>error(throwable));
+            }
+        };
+    }
+
+    /**
+     * Undo a write on the synced store
+     */
+    private Completable rollback(String operation, RollbackJournal<T> journal) {
+        metrics.onRollback(getClass(), operation);
+        return localWrite("undo", journal.undo(syncedStore));
+    }
+
+    /**
+     * Call the dao on the threads of the execution policy, measured
+     */
+    private <R> Flowable<R> remote(String operation, Flowable<R> call) {
+        return executionPolicy.remote(measure(operation, StoreMetrics.Tier.REMOTE, call));
+    }
+
+    /**
+     * Read the synced store on the threads of the execution policy, measured
+     */
+    private <R> Flowable<R> localRead(String operation, Flowable<R> call) {
+        return executionPolicy.localRead(measure(operation, StoreMetrics.Tier.LOCAL, call));
+    }
+
+    /**
+     * Write the synced store on the threads of the execution policy, measured
+     */
+    private <R> Flowable<R> localWrite(String operation, Flowable<R> call) {
+        return executionPolicy.localWrite(measure(operation, StoreMetrics.Tier.LOCAL, call));
+    }
+
+    private Completable localWrite(String operation, Completable call) {
+        if (metrics == StoreMetrics.NONE) {
+            return executionPolicy.localWrite(call);
+        }
+        return executionPolicy.localWrite(measure(operation, StoreMetrics.Tier.LOCAL, call.<Object>toFlowable()).ignoreElements());
+    }
+
+    /**
+     * Report the duration, the result size and the error of a call to the metrics
+     * The duration runs from the subscription to the termination (or cancellation) of the call.
+     */
+    private <R> Flowable<R> measure(final String operation, final StoreMetrics.Tier tier, final Flowable<R> call) {
+        if (metrics == StoreMetrics.NONE) {
+            return call; // not even timed
+        }
+        final StoreMetrics listener = metrics;
+        return Flowable.defer(new Callable<Publisher<R>>() {
+            @Override
+            public Publisher<R> call() throws Exception {
+                final long start = System.nanoTime();
+                final AtomicInteger resultSize = new AtomicInteger(-1);
+                final AtomicBoolean reported = new AtomicBoolean(false);
+                final Action done = new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        if (reported.compareAndSet(false, true)) {
+                            listener.onCall(StoreService.this.getClass(), operation, tier, System.nanoTime() - start, resultSize.get(), null);
+                        }
+                    }
+                };
+                return call.doOnNext(new Consumer<R>() {
+                    @Override
+                    public void accept(R value) throws Exception {
+                        resultSize.set(sizeOf(value));
+                    }
+                }).doOnError(new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        if (reported.compareAndSet(false, true)) {
+                            listener.onCall(StoreService.this.getClass(), operation, tier, System.nanoTime() - start, resultSize.get(), throwable);
+                        }
+                    }
+                }).doOnComplete(done).doOnCancel(done); // reported before the downstream sees the termination
+            }
+        });
+    }
+
+    /**
+     * Number of items of a result, -1 if unknown
+     */
+    private static int sizeOf(Object value) {
+        if (value instanceof Optional) {
+            final Optional<?> optional = (Optional<?>) value;
+            return optional.isNull() ? 0 : (optional.get() instanceof Collection ? ((Collection<?>) optional.get()).size() : 1);
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof Integer) {
+            return (Integer) value; // number of items deleted
+        }
+        if (value instanceof Page) {
+            return ((Page<?>) value).items.size();
+        }
+        if (value instanceof WriteBatch) {
+            return ((WriteBatch<?>) value).items().size();
+        }
+        if (value instanceof ChangeSet) {
+            return ((ChangeSet<?>) value).upserts.size() + ((ChangeSet<?>) value).deletedIds.size();
+        }
+        return -1;
+    }
+
+    /**
+     * Write an item on the dao, through the write-behind queue if enabled
+     * @param journal   Undo record of the write on the synced store, applied if the dao fails, null if none
+     */
+    private Flowable<Optional<T>> remoteInsertOrUpdate(T item, RollbackJournal<T> journal) {
+        if (writeBehindQueue != null) {
+            return writeBehindQueue.submit(item, journal); // the queue undoes each key once
+        }
+        return undoingOnError("insertOrUpdate", remote("insertOrUpdate", dao.insertOrUpdate(item)), journal);
+    }
+
+    private Flowable<Optional<T>> remoteUpdate(T item, RollbackJournal<T> journal) {
+        if (writeBehindQueue != null) {
+            return writeBehindQueue.submit(item, journal);
+        }
+        return undoingOnError("update", remote("update", dao.update(item)), journal);
+    }
+
+    private <R> Flowable<R> undoingOnError(String operation, Flowable<R> write, RollbackJournal<T> journal) {
+        return journal == null ? write : write.onErrorResumeNext(this.<R>undo(operation, journal));
+    }
+
+    /**
+     * Share a read with the identical reads in flight, if enabled
+     */
+    private <R> Flowable<R> coalesce(QueryKey key, Flowable<R> read) {
+        return inFlightRequests == null ? read : inFlightRequests.share(key, read);
+    }
+
+    /**
+     * Primary key of the items declared with withKeyExtractor
+     * @param feature   What needs the primary key, for the error message
+     */
+    private KeyExtractor<T, ?> requireKeyExtractor(String feature) {
+        if (keyExtractor == null) {
+            throw new IllegalStateException(feature + " needs the primary key of the items, see withKeyExtractor");
+        }
+        return keyExtractor;
+    }
+
+    /**
+     * Distinct ids of the items, null if the primary key is unknown
+     */
+    private Set<Object> idsOf(List<T> items) {
+        if (keyExtractor == null) {
+            return null;
+        }
+        final Set<Object> ids = new LinkedHashSet<>(items.size() * 2);
+        for (T item : items) {
+            ids.add(keyExtractor.getKey(item));
+        }
+        return ids;
+    }
+
+    /**
+     * Invalidate the cached queries affected by a write
+     * @param items Written items, null if everything can be affected
+     */
+    private <R> Flowable<R> invalidateQueries(Flowable<R> write, List<T> items) {
+        return queryCache == null ? write : queryCache.invalidating(write, items);
     }
 }
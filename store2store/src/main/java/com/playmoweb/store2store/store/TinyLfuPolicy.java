@@ -0,0 +1,239 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * W-TinyLFU admission and eviction policy
+ * - new keys enter a small LRU window (1% of the budget)
+ * - keys leaving the window become candidates of the main space, a segmented LRU (probation then protected)
+ * - when the budget is exceeded, a candidate is admitted only if it is more popular than the probation victim
+ * This way a one-off scan only flows through the window and the probation segment without flushing hot keys.
+ *
+ * @note    This class is not thread safe, the caller must hold a lock
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class TinyLfuPolicy<K> {
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final HashMap<K, Node<K>> nodes = new HashMap<>();
+    private final FrequencySketch sketch;
+    private final Segment<K> window = new Segment<>();
+    private final Segment<K> probation = new Segment<>();
+    private final Segment<K> protectedSegment = new Segment<>();
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long weight = 0;
+
+    TinyLfuPolicy(long maximum) {
+        if (maximum <= 0) {
+            throw new IllegalArgumentException("The maximum weight of a cache must be positive");
+        }
+        this.maximum = maximum;
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (maximum - windowMaximum) * 8 / 10;
+        this.sketch = new FrequencySketch(maximum);
+    }
+
+    long weight() {
+        return weight;
+    }
+
+    /**
+     * Record the insertion or the update of a key
+     * @return  The keys to evict, possibly including this one if it is not admitted
+     */
+    List<K> recordWrite(K key, int itemWeight) {
+        if (itemWeight < 0) {
+            throw new IllegalArgumentException("The weight of an item can't be negative");
+        }
+
+        sketch.increment(key);
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key, itemWeight, WINDOW);
+            nodes.put(key, node);
+            window.addLast(node);
+            weight += itemWeight;
+        } else {
+            segmentOf(node).weight += itemWeight - node.weight;
+            weight += itemWeight - node.weight;
+            node.weight = itemWeight;
+            onHit(node);
+        }
+
+        final List<K> evicted = new ArrayList<>();
+        if (itemWeight > maximum) {
+            evict(node, evicted); // can never fit
+        }
+        evictIfNeeded(evicted);
+        return evicted;
+    }
+
+    /**
+     * Record a read of a key
+     */
+    void recordAccess(K key) {
+        sketch.increment(key);
+        final Node<K> node = nodes.get(key);
+        if (node != null) {
+            onHit(node);
+        }
+    }
+
+    /**
+     * Forget a key removed from the store
+     * @return  The weight of the removed key
+     */
+    int remove(K key) {
+        final Node<K> node = nodes.remove(key);
+        if (node == null) {
+            return 0;
+        }
+        segmentOf(node).remove(node);
+        weight -= node.weight;
+        return node.weight;
+    }
+
+    void clear() {
+        nodes.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        sketch.clear();
+        weight = 0;
+    }
+
+    private void onHit(Node<K> node) {
+        switch (node.segment) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.segment = PROTECTED;
+                protectedSegment.addLast(node);
+                while (protectedSegment.weight > protectedMaximum && protectedSegment.first != node) {
+                    final Node<K> demoted = protectedSegment.first;
+                    protectedSegment.remove(demoted);
+                    demoted.segment = PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            default:
+                protectedSegment.moveToLast(node);
+                break;
+        }
+    }
+
+    private void evictIfNeeded(List<K> evicted) {
+        // the oldest keys of the window become candidates of the main space
+        while (window.weight > windowMaximum && window.first != null) {
+            final Node<K> candidate = window.first;
+            window.remove(candidate);
+            candidate.segment = PROBATION;
+            probation.addLast(candidate);
+        }
+
+        while (weight > maximum) {
+            final Node<K> victim = probation.first;
+            final Node<K> candidate = probation.last;
+            if (victim == null) {
+                evict(protectedSegment.first != null ? protectedSegment.first : window.first, evicted);
+            } else if (victim == candidate || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evict(victim, evicted);
+            } else {
+                evict(candidate, evicted); // not popular enough to be admitted
+            }
+        }
+    }
+
+    private void evict(Node<K> node, List<K> evicted) {
+        nodes.remove(node.key);
+        segmentOf(node).remove(node);
+        weight -= node.weight;
+        evicted.add(node.key);
+    }
+
+    private Segment<K> segmentOf(Node<K> node) {
+        switch (node.segment) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedSegment;
+        }
+    }
+
+    private static final class Node<K> {
+        final K key;
+        int weight;
+        int segment;
+        Node<K> previous;
+        Node<K> next;
+
+        Node(K key, int weight, int segment) {
+            this.key = key;
+            this.weight = weight;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * Access ordered doubly linked list, first is the least recently used
+     */
+    private static final class Segment<K> {
+        Node<K> first;
+        Node<K> last;
+        long weight = 0;
+
+        void addLast(Node<K> node) {
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K> node) {
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K> node) {
+            if (last != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            first = null;
+            last = null;
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.Flowable;
+
+/**
+ * Writes collected to be applied as a single batch by commit()
+ * The writes are normalized by key as they are added : the last write of a key wins, an insert followed by a delete
+ * cancels out, a delete followed by an insert becomes an insertOrUpdate. On commit the batch is written to the synced
+ * store at once, then sent to the dao with applyBatch, each write keeping its kind (insert, update, insertOrUpdate or
+ * delete). If the dao fails, the synced store is restored as it was.
+ *
+ * @note    A unit of work is not thread safe and can be committed only once.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class UnitOfWork<T> {
+    private enum Kind { INSERT, UPDATE, INSERT_OR_UPDATE, DELETE }
+
+    private final StoreService<T> store;
+    private final KeyExtractor<T, ?> keyExtractor;
+    private final LinkedHashMap<Object, PendingOperation<T>> operations = new LinkedHashMap<>();
+    private boolean committed = false;
+
+    UnitOfWork(StoreService<T> store, KeyExtractor<T, ?> keyExtractor) {
+        this.store = store;
+        this.keyExtractor = keyExtractor;
+    }
+
+    public UnitOfWork<T> insert(T item) {
+        return add(Kind.INSERT, item);
+    }
+
+    public UnitOfWork<T> insert(List<T> items) {
+        return add(Kind.INSERT, items);
+    }
+
+    /**
+     * Update an item, the commit fails if it does not exist in the synced store
+     */
+    public UnitOfWork<T> update(T item) {
+        return add(Kind.UPDATE, item);
+    }
+
+    public UnitOfWork<T> update(List<T> items) {
+        return add(Kind.UPDATE, items);
+    }
+
+    public UnitOfWork<T> insertOrUpdate(T item) {
+        return add(Kind.INSERT_OR_UPDATE, item);
+    }
+
+    public UnitOfWork<T> insertOrUpdate(List<T> items) {
+        return add(Kind.INSERT_OR_UPDATE, items);
+    }
+
+    public UnitOfWork<T> delete(T item) {
+        return add(Kind.DELETE, item);
+    }
+
+    public UnitOfWork<T> delete(List<T> items) {
+        return add(Kind.DELETE, items);
+    }
+
+    /**
+     * Number of writes left after normalization
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Apply the writes
+     * @return  The batch once applied on the synced store, then the batch applied by the dao
+     */
+    public Flowable<WriteBatch<T>> commit() {
+        checkNotCommitted();
+        committed = true;
+
+        // each write reaches the dao with its kind
+        final List<T> inserts = new ArrayList<>();
+        final List<T> updates = new ArrayList<>();
+        final List<T> upserts = new ArrayList<>();
+        final List<T> deletes = new ArrayList<>();
+        final Set<Object> updatedKeys = new HashSet<>();
+        for (Map.Entry<Object, PendingOperation<T>> e : operations.entrySet()) {
+            final PendingOperation<T> operation = e.getValue();
+            switch (operation.kind) {
+                case INSERT:
+                    inserts.add(operation.item);
+                    break;
+                case UPDATE:
+                    updates.add(operation.item);
+                    updatedKeys.add(e.getKey());
+                    break;
+                case DELETE:
+                    deletes.add(operation.item);
+                    break;
+                default:
+                    upserts.add(operation.item);
+                    break;
+            }
+        }
+        return store.commit(new WriteBatch<>(inserts, updates, upserts, deletes), updatedKeys);
+    }
+
+    private UnitOfWork<T> add(Kind kind, List<T> items) {
+        for (T item : items) {
+            add(kind, item);
+        }
+        return this;
+    }
+
+    private UnitOfWork<T> add(Kind kind, T item) {
+        checkNotCommitted();
+        final Object key = keyExtractor.getKey(item);
+        final PendingOperation<T> previous = operations.get(key);
+        if (previous == null) {
+            operations.put(key, new PendingOperation<>(kind, item));
+            return this;
+        }
+
+        switch (kind) {
+            case DELETE:
+                if (previous.kind == Kind.INSERT) {
+                    operations.remove(key); // never written
+                } else {
+                    previous.kind = Kind.DELETE;
+                    previous.item = item;
+                }
+                break;
+            case UPDATE:
+                if (previous.kind == Kind.DELETE) {
+                    throw new IllegalArgumentException("An item deleted in a unit of work can't be updated, key " + key);
+                }
+                previous.item = item; // an insert stays an insert
+                break;
+            default:
+                if (previous.kind == Kind.DELETE) {
+                    previous.kind = Kind.INSERT_OR_UPDATE;
+                }
+                previous.item = item;
+                break;
+        }
+        return this;
+    }
+
+    private void checkNotCommitted() {
+        if (committed) {
+            throw new IllegalStateException("This unit of work has already been committed");
+        }
+    }
+
+    private static final class PendingOperation<T> {
+        Kind kind;
+        T item;
+
+        PendingOperation(Kind kind, T item) {
+            this.kind = kind;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.playmoweb.store2store.store;
+
+/**
+ * Compute the weight of an item (for instance its approximate size in bytes)
+ * @note    The weight of an item must not change while it is stored
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public interface Weigher<T> {
+    int weigh(T item);
+}
@@ -0,0 +1,64 @@
+package com.playmoweb.store2store.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes to apply together on a dao
+ * - inserts are the items to insert
+ * - updates are the items to update, they must exist
+ * - upserts are the items to insert or update
+ * - deletes are the items to delete
+ * A key appears at most once in a batch.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class WriteBatch<T> {
+    public final List<T> inserts;
+    public final List<T> updates;
+    public final List<T> upserts;
+    public final List<T> deletes;
+
+    public WriteBatch(List<T> upserts, List<T> deletes) {
+        this(Collections.<T>emptyList(), Collections.<T>emptyList(), upserts, deletes);
+    }
+
+    public WriteBatch(List<T> inserts, List<T> updates, List<T> upserts, List<T> deletes) {
+        this.inserts = Collections.unmodifiableList(new ArrayList<>(inserts));
+        this.updates = Collections.unmodifiableList(new ArrayList<>(updates));
+        this.upserts = Collections.unmodifiableList(new ArrayList<>(upserts));
+        this.deletes = Collections.unmodifiableList(new ArrayList<>(deletes));
+    }
+
+    public boolean isEmpty() {
+        return inserts.isEmpty() && updates.isEmpty() && upserts.isEmpty() && deletes.isEmpty();
+    }
+
+    /**
+     * Items inserted, updated or upserted by the batch, in this order
+     */
+    public List<T> written() {
+        final List<T> items = new ArrayList<>(inserts.size() + updates.size() + upserts.size());
+        items.addAll(inserts);
+        items.addAll(updates);
+        items.addAll(upserts);
+        return items;
+    }
+
+    /**
+     * Every item of the batch, written items first
+     */
+    public List<T> items() {
+        final List<T> items = written();
+        items.addAll(deletes);
+        return items;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBatch{inserts=" + inserts.size() + ", updates=" + updates.size()
+                + ", upserts=" + upserts.size() + ", deletes=" + deletes.size() + "}";
+    }
+}
@@ -0,0 +1,228 @@
+package com.playmoweb.store2store.store;
+
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.AsyncProcessor;
+
+/**
+ * Write-behind queue of single item writes
+ * The writes are collected during a time window (or until a maximum number of items is reached) then sent to the
+ * dao in a single insertOrUpdate(List) call. Several writes of the same key in a window are collapsed into the
+ * last one. Each writer gets the item returned by the dao for its key, or the error of the batch.
+ *
+ * A batch fails as a whole : every key of the batch is rolled back, once, to the version it had before its first
+ * write of the window, then every writer gets the error.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+final class WriteBehindQueue<T> {
+    private final Function<List<T>, Flowable<Optional<List<T>>>> send;
+    private final KeyExtractor<T, ?> keyExtractor;
+    private final long window;
+    private final TimeUnit unit;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+    private final Function<RollbackJournal<T>, Completable> rollback;
+
+    /**
+     * Writes waiting for the next flush, by key in order of first write
+     */
+    private LinkedHashMap<Object, PendingWrite<T>> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    /**
+     * @param send      Write of a batch on the dao
+     * @param scheduler Threads of the write windows, a batch is sent from them
+     * @param rollback  Undo of a write on the synced store, applied when the batch of the write fails
+     */
+    WriteBehindQueue(Function<List<T>, Flowable<Optional<List<T>>>> send, KeyExtractor<T, ?> keyExtractor, long window, TimeUnit unit, int maxBatchSize,
+                     Scheduler scheduler, Function<RollbackJournal<T>, Completable> rollback) {
+        if (window < 0) {
+            throw new IllegalArgumentException("The write window can't be negative");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The maximum size of a batch must be positive");
+        }
+        this.send = send;
+        this.keyExtractor = keyExtractor;
+        this.window = window;
+        this.unit = unit;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.rollback = rollback;
+    }
+
+    /**
+     * Queue a write, it is sent with the next batch
+     * @param journal   Undo record of the write on the synced store, null if there is nothing to undo. Only the
+     *                  journal of the first write of a key in the window is kept.
+     * @note    The write is queued on subscription and is not cancelled if the subscriber cancels.
+     */
+    Flowable<Optional<T>> submit(final T item, final RollbackJournal<T> journal) {
+        return Flowable.defer(new Callable<Publisher<Optional<T>>>() {
+            @Override
+            public Publisher<Optional<T>> call() throws Exception {
+                final AsyncProcessor<Optional<T>> result = AsyncProcessor.create();
+                final Object key = keyExtractor.getKey(item);
+                boolean flushNow = false;
+                boolean scheduleFlush = false;
+
+                synchronized (WriteBehindQueue.this) {
+                    PendingWrite<T> write = pending.get(key);
+                    if (write == null) {
+                        write = new PendingWrite<>();
+                        write.journal = journal; // the version before the window
+                        pending.put(key, write);
+                    }
+                    write.item = item; // the last write wins
+                    write.writers.add(result);
+
+                    if (pending.size() >= maxBatchSize) {
+                        flushNow = true;
+                    } else if (!flushScheduled) {
+                        flushScheduled = true;
+                        scheduleFlush = true;
+                    }
+                }
+
+                if (flushNow) {
+                    flush();
+                } else if (scheduleFlush) {
+                    scheduler.scheduleDirect(new Runnable() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, window, unit);
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Send the pending writes now
+     */
+    void flush() {
+        final LinkedHashMap<Object, PendingWrite<T>> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        final List<T> items = new ArrayList<>(batch.size());
+        for (PendingWrite<T> write : batch.values()) {
+            items.add(write.item);
+        }
+
+        final AtomicReference<Optional<List<T>>> last = new AtomicReference<>();
+        final Flowable<Optional<List<T>>> request;
+        try {
+            request = send.apply(items);
+        } catch (Throwable throwable) {
+            fail(batch, throwable);
+            return;
+        }
+
+        request.subscribe(
+                new Consumer<Optional<List<T>>>() {
+                    @Override
+                    public void accept(Optional<List<T>> written) throws Exception {
+                        last.set(written);
+                    }
+                },
+                new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) throws Exception {
+                        fail(batch, throwable);
+                    }
+                },
+                new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        complete(batch, last.get());
+                    }
+                }
+        );
+    }
+
+    private void complete(Map<Object, PendingWrite<T>> batch, Optional<List<T>> written) {
+        final Map<Object, T> byKey = new HashMap<>();
+        if (written != null && !written.isNull()) {
+            for (T item : written.get()) {
+                byKey.put(keyExtractor.getKey(item), item);
+            }
+        }
+
+        for (Map.Entry<Object, PendingWrite<T>> e : batch.entrySet()) {
+            final T item = byKey.containsKey(e.getKey()) ? byKey.get(e.getKey()) : e.getValue().item;
+            for (AsyncProcessor<Optional<T>> writer : e.getValue().writers) {
+                writer.onNext(Optional.wrap(item));
+                writer.onComplete();
+            }
+        }
+    }
+
+    private void fail(final Map<Object, PendingWrite<T>> batch, final Throwable throwable) {
+        final List<Completable> undos = new ArrayList<>(batch.size());
+        for (final PendingWrite<T> write : batch.values()) {
+            if (write.journal != null) {
+                undos.add(Completable.defer(new Callable<Completable>() {
+                    @Override
+                    public Completable call() throws Exception {
+                        return rollback.apply(write.journal);
+                    }
+                }));
+            }
+        }
+
+        Completable.concat(undos).subscribe(
+                new Action() {
+                    @Override
+                    public void run() throws Exception {
+                        error(batch, throwable);
+                    }
+                },
+                new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable undoError) throws Exception {
+                        error(batch, undoError);
+                    }
+                }
+        );
+    }
+
+    private void error(Map<Object, PendingWrite<T>> batch, Throwable throwable) {
+        for (PendingWrite<T> write : batch.values()) {
+            for (AsyncProcessor<Optional<T>> writer : write.writers) {
+                writer.onError(throwable);
+            }
+        }
+    }
+
+    private static final class PendingWrite<T> {
+        T item;
+        RollbackJournal<T> journal;
+        final List<AsyncProcessor<Optional<T>>> writers = new ArrayList<>(1);
+    }
+}
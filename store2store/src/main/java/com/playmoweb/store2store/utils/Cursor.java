@@ -0,0 +1,110 @@
+package com.playmoweb.store2store.utils;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Position in an ordering : the values of the sorting keys of the last row seen
+ * The next page starts with the first row strictly after these values, whatever was inserted or deleted before.
+ *
+ * Usage :
+ *      Cursor cursor = Cursor.after(sortingMode, lastRow);
+ *
+ * @warn    The sorting rules must be a total order (end them with a unique key) or rows with the same values as the
+ *          last row seen are skipped.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class Cursor {
+    private final Object[] values;
+
+    private Cursor(Object[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Cursor after the given values of the sorting keys, in the order of the sorting rules
+     */
+    public static Cursor after(Object... values) {
+        return new Cursor(values.clone());
+    }
+
+    /**
+     * Cursor after a row of an ordering
+     */
+    public static Cursor after(SortingMode sortingMode, Object row) {
+        final Object[] values = new Object[sortingMode.entries.size()];
+        int i = 0;
+        for (AbstractMap.SimpleEntry<String, SortType> e : sortingMode.entries) {
+            values[i++] = FieldAccessor.of(row.getClass(), e.getKey()).get(row);
+        }
+        return new Cursor(values);
+    }
+
+    public List<Object> values() {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Object value(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return  true if the row comes strictly after this cursor in the ordering
+     */
+    public boolean isBefore(SortingMode sortingMode, Object row) {
+        if (sortingMode.entries.size() != values.length) {
+            throw new IllegalArgumentException("The cursor has " + values.length + " values for " + sortingMode.entries.size() + " sorting keys");
+        }
+
+        int i = 0;
+        for (AbstractMap.SimpleEntry<String, SortType> e : sortingMode.entries) {
+            int result = ValueComparator.INSTANCE.compare(FieldAccessor.of(row.getClass(), e.getKey()).get(row), values[i++]);
+            if (e.getValue() == SortType.DESCENDING) {
+                result = -result;
+            }
+            if (result != 0) {
+                return result > 0;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Cursor) || ((Cursor) o).values.length != values.length) {
+            return false;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!ValueComparator.equal(values[i], ((Cursor) o).values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (Object value : values) {
+            final Object normalized = ValueComparator.normalize(value);
+            h = 31 * h + (normalized == null ? 0 : normalized.hashCode());
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "Cursor" + Arrays.toString(values);
+    }
+}
@@ -0,0 +1,196 @@
+package com.playmoweb.store2store.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read a named field of a model
+ * The getter (getX, isX or x) is preferred to the field itself to support proxies, the field is used otherwise.
+ * Accessors are resolved once per class and name then cached.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public abstract class FieldAccessor {
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, FieldAccessor>> CACHE = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Class<?> type;
+
+    FieldAccessor(String name, Class<?> type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Declared type of the field (may be primitive)
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Read the value of the field on an instance
+     */
+    public abstract Object get(Object target);
+
+    /**
+     * Read an integral (or char) field without boxing when possible
+     */
+    public long getLong(Object target) {
+        final Object value = get(target);
+        return value instanceof Character ? (Character) value : ((Number) value).longValue();
+    }
+
+    /**
+     * Read a floating point field without boxing when possible
+     */
+    public double getDouble(Object target) {
+        return ((Number) get(target)).doubleValue();
+    }
+
+    /**
+     * Read a boolean field without boxing when possible
+     */
+    public boolean getBoolean(Object target) {
+        return (Boolean) get(target);
+    }
+
+    /**
+     * Get the cached accessor of a field
+     * @throws IllegalArgumentException If no getter or field has this name
+     */
+    public static FieldAccessor of(Class<?> clazz, String name) {
+        ConcurrentHashMap<String, FieldAccessor> accessors = CACHE.get(clazz);
+        if (accessors == null) {
+            final ConcurrentHashMap<String, FieldAccessor> created = new ConcurrentHashMap<>();
+            accessors = CACHE.putIfAbsent(clazz, created);
+            if (accessors == null) {
+                accessors = created;
+            }
+        }
+
+        FieldAccessor accessor = accessors.get(name);
+        if (accessor == null) {
+            accessor = resolve(clazz, name);
+            accessors.put(name, accessor);
+        }
+        return accessor;
+    }
+
+    private static FieldAccessor resolve(Class<?> clazz, String name) {
+        final String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String methodName : new String[]{"get" + capitalized, "is" + capitalized, name}) {
+            try {
+                final Method method = clazz.getMethod(methodName);
+                if (method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())) {
+                    method.setAccessible(true);
+                    return new MethodAccessor(name, method);
+                }
+            } catch (NoSuchMethodException ignored) {
+                // try the next candidate
+            }
+        }
+
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                final Field field = c.getDeclaredField(name);
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    return new FieldReader(name, field);
+                }
+            } catch (NoSuchFieldException ignored) {
+                // try the super class
+            }
+        }
+
+        throw new IllegalArgumentException("No getter or field named '" + name + "' in " + clazz.getName());
+    }
+
+    /**
+     * Accessor based on a getter
+     */
+    private static final class MethodAccessor extends FieldAccessor {
+        private final Method method;
+
+        MethodAccessor(String name, Method method) {
+            super(name, method.getReturnType());
+            this.method = method;
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return method.invoke(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can't read '" + getName() + "'", e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Can't read '" + getName() + "'", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Accessor based on a field
+     */
+    private static final class FieldReader extends FieldAccessor {
+        private final Field field;
+
+        FieldReader(String name, Field field) {
+            super(name, field.getType());
+            this.field = field;
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can't read '" + getName() + "'", e);
+            }
+        }
+
+        @Override
+        public long getLong(Object target) {
+            if (!getType().isPrimitive()) {
+                return super.getLong(target);
+            }
+            try {
+                return field.getLong(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can't read '" + getName() + "'", e);
+            }
+        }
+
+        @Override
+        public double getDouble(Object target) {
+            if (!getType().isPrimitive()) {
+                return super.getDouble(target);
+            }
+            try {
+                return field.getDouble(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can't read '" + getName() + "'", e);
+            }
+        }
+
+        @Override
+        public boolean getBoolean(Object target) {
+            if (getType() != boolean.class) {
+                return super.getBoolean(target);
+            }
+            try {
+                return field.getBoolean(target);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can't read '" + getName() + "'", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.playmoweb.store2store.utils;
+
+/**
+ * Compare two items on one field, specialized on the declared type of the field
+ * Primitive fields are compared without boxing when they are read from the field itself.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+abstract class FieldComparator {
+    final FieldAccessor accessor;
+
+    FieldComparator(FieldAccessor accessor) {
+        this.accessor = accessor;
+    }
+
+    abstract int compare(Object a, Object b);
+
+    static FieldComparator of(FieldAccessor accessor) {
+        final Class<?> type = accessor.getType();
+        if (type == int.class || type == long.class || type == short.class || type == byte.class || type == char.class) {
+            return new IntegralComparator(accessor);
+        }
+        if (type == double.class || type == float.class) {
+            return new FloatingComparator(accessor);
+        }
+        if (type == boolean.class) {
+            return new BooleanComparator(accessor);
+        }
+        if (type == String.class) {
+            return new StringComparator(accessor);
+        }
+        return new ValueFieldComparator(accessor);
+    }
+
+    private static final class IntegralComparator extends FieldComparator {
+        IntegralComparator(FieldAccessor accessor) {
+            super(accessor);
+        }
+
+        @Override
+        int compare(Object a, Object b) {
+            return ValueComparator.compareLongs(accessor.getLong(a), accessor.getLong(b));
+        }
+    }
+
+    private static final class FloatingComparator extends FieldComparator {
+        FloatingComparator(FieldAccessor accessor) {
+            super(accessor);
+        }
+
+        @Override
+        int compare(Object a, Object b) {
+            return Double.compare(accessor.getDouble(a), accessor.getDouble(b));
+        }
+    }
+
+    private static final class BooleanComparator extends FieldComparator {
+        BooleanComparator(FieldAccessor accessor) {
+            super(accessor);
+        }
+
+        @Override
+        int compare(Object a, Object b) {
+            final boolean x = accessor.getBoolean(a);
+            return x == accessor.getBoolean(b) ? 0 : (x ? 1 : -1);
+        }
+    }
+
+    private static final class StringComparator extends FieldComparator {
+        StringComparator(FieldAccessor accessor) {
+            super(accessor);
+        }
+
+        @Override
+        int compare(Object a, Object b) {
+            final String x = (String) accessor.get(a);
+            final String y = (String) accessor.get(b);
+            if (x == null || y == null) {
+                return x == y ? 0 : (x == null ? -1 : 1);
+            }
+            return x.compareTo(y);
+        }
+    }
+
+    private static final class ValueFieldComparator extends FieldComparator {
+        ValueFieldComparator(FieldAccessor accessor) {
+            super(accessor);
+        }
+
+        @Override
+        int compare(Object a, Object b) {
+            return ValueComparator.INSTANCE.compare(accessor.get(a), accessor.get(b));
+        }
+    }
+}
@@ -1,17 +1,47 @@
 package com.playmoweb.store2store.utils;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.WeakHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * A filter is a map of keys with a filter type and a value
+ * Filters are structurally hashed : two filters with the same conditions are equal and can be used as cache keys.
+ * The filters built by {@link #builder()} are immutable, they can be shared across threads. The other filters are
+ * modified by add(), use {@link #immutable()} to keep their current conditions.
+ *
+ * Usage :
+ *      Filter filter = Filter.builder()
+ *              .add("name", "store2store")
+ *              .add("id", FilterType.GREATER_THAN, 10)
+ *              .anyOf("category", Arrays.asList(1, 2))
+ *              .build();
+ *
+ * @note    add() with a list (or an array) of values keeps the last value, use anyOf() or noneOf() to match many.
+ * @warn    A filter must not be modified while it is read by another thread.
  */
-public class Filter extends WeakHashMap<String, Filter.KeyValuePair> {
-    // TODO optimize access with a copy in an weak list
+public class Filter extends AbstractMap<String, Filter.KeyValuePair> {
     public static final Filter NONE = null;
 
+    /**
+     * Current conditions, replaced as a whole by each modification
+     */
+    private volatile Conditions conditions;
+    private final boolean immutable;
+    @SuppressWarnings("rawtypes") // the values of the map are raw pairs, as in the previous versions
+    private Set<Map.Entry<String, KeyValuePair>> entrySet;
+
     public Filter() {
-        super();
+        this(Conditions.EMPTY, false);
     }
 
     public <T> Filter(String key, T value) {
@@ -19,44 +49,405 @@ public class Filter extends WeakHashMap<String, Filter.KeyValuePair> {
     }
 
     public <T> Filter(String key, FilterType type, T value) {
-        super();
-        add(key, type, value);
+        this(Conditions.EMPTY.with(key, new KeyValuePair<>(type, value)), false);
+    }
+
+    /**
+     * Copy the conditions of a filter into a new modifiable filter
+     */
+    public Filter(Filter filter) {
+        this(filter.conditions, false);
+    }
+
+    private Filter(Conditions conditions, boolean immutable) {
+        this.conditions = conditions;
+        this.immutable = immutable;
+    }
+
+    public static Builder builder() {
+        return new Builder();
     }
 
+    /**
+     * Add a condition, replacing any condition on the same key
+     */
     public <T> Filter add(String key, T value) {
-        this.put(key, new KeyValuePair<>(FilterType.EQUAL, value));
-        return this;
+        return set(key, new KeyValuePair<>(FilterType.EQUAL, value));
     }
 
+    /**
+     * Add a condition, replacing any condition on the same key
+     */
     public <T> Filter add(String key, FilterType type, T value) {
-        this.put(key, new KeyValuePair<>(type, value));
-        return this;
+        return set(key, new KeyValuePair<>(type, value));
     }
 
+    /**
+     * Add a condition per value on the same key : the last value is kept
+     */
     public <T> Filter add(String key, FilterType type, List<T> values) {
-        for(T value : values) {
-            this.put(key, new KeyValuePair<>(type, value));
+        for (T value : values) {
+            add(key, type, value);
         }
         return this;
     }
 
+    /**
+     * Add a condition per value on the same key : the last value is kept
+     */
     public <T> Filter add(String key, FilterType type, T[] values) {
-        for(T value : values) {
-            this.put(key, new KeyValuePair<>(type, value));
+        return add(key, type, Arrays.asList(values));
+    }
+
+    /**
+     * Add a condition matching any of the values (IN), replacing any condition on the same key
+     */
+    public <T> Filter anyOf(String key, Collection<T> values) {
+        return set(key, KeyValuePair.of(FilterType.IN, values));
+    }
+
+    /**
+     * Add a condition matching none of the values (NOT_IN), replacing any condition on the same key
+     */
+    public <T> Filter noneOf(String key, Collection<T> values) {
+        return set(key, KeyValuePair.of(FilterType.NOT_IN, values));
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public KeyValuePair put(String key, KeyValuePair pair) {
+        final KeyValuePair<?> previous = get(key);
+        set(key, pair);
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public KeyValuePair remove(Object key) {
+        checkModifiable();
+        final KeyValuePair<?> previous = get(key);
+        if (previous != null) {
+            conditions = conditions.without((String) key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        checkModifiable();
+        conditions = Conditions.EMPTY;
+    }
+
+    /**
+     * @return  true if this filter can't be modified
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    /**
+     * Get an immutable filter with the current conditions of this one
+     */
+    public Filter immutable() {
+        return immutable ? this : new Filter(conditions, true);
+    }
+
+    /**
+     * Keys and filter types of this filter, without the values
+     * Two filters with the same shape only differ by their values.
+     */
+    public String shape() {
+        return conditions.shape();
+    }
+
+    /**
+     * Key at a position, keys are sorted
+     */
+    public String keyAt(int index) {
+        return conditions.keys[index];
+    }
+
+    /**
+     * Condition at a position, keys are sorted
+     */
+    public KeyValuePair<?> pairAt(int index) {
+        return conditions.pairs[index];
+    }
+
+    @Override
+    public int size() {
+        return conditions.keys.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && Arrays.binarySearch(conditions.keys, key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public KeyValuePair get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
         }
+        final Conditions current = conditions;
+        final int index = Arrays.binarySearch(current.keys, key);
+        return index >= 0 ? current.pairs[index] : null;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Set<Map.Entry<String, KeyValuePair>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, KeyValuePair>>() {
+                @Override
+                public Iterator<Map.Entry<String, KeyValuePair>> iterator() {
+                    return new Iterator<Map.Entry<String, KeyValuePair>>() {
+                        private final Conditions iterated = conditions;
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < iterated.keys.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, KeyValuePair> next() {
+                            if (index >= iterated.keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            final int i = index++;
+                            return new AbstractMap.SimpleImmutableEntry<String, KeyValuePair>(iterated.keys[i], iterated.pairs[i]);
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (index == 0) {
+                                throw new IllegalStateException();
+                            }
+                            Filter.this.remove(iterated.keys[index - 1]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Filter.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof Filter) {
+            final Conditions current = conditions;
+            final Conditions other = ((Filter) o).conditions;
+            return current.hash == other.hash && Arrays.equals(current.keys, other.keys) && Arrays.equals(current.pairs, other.pairs);
+        }
+        return super.equals(o); // any other map with the same entries
+    }
+
+    @Override
+    public int hashCode() {
+        return conditions.hash;
+    }
+
+    private Filter set(String key, KeyValuePair<?> pair) {
+        checkModifiable();
+        if (key == null || pair == null) {
+            throw new IllegalArgumentException("A condition needs a key and a value");
+        }
+        conditions = conditions.with(key, pair);
         return this;
     }
 
+    private void checkModifiable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("This filter is immutable, copy it with new Filter(filter) to modify it");
+        }
+    }
+
+    /**
+     * Conditions sorted by key, with their structural hash
+     */
+    private static final class Conditions {
+        static final Conditions EMPTY = new Conditions(new String[0], new KeyValuePair<?>[0]);
+
+        final String[] keys;
+        final KeyValuePair<?>[] pairs;
+        final int hash;
+        private String shape;
+
+        Conditions(String[] keys, KeyValuePair<?>[] pairs) {
+            this.keys = keys;
+            this.pairs = pairs;
+            int h = 0;
+            for (int i = 0; i < keys.length; i++) {
+                h += keys[i].hashCode() ^ pairs[i].hashCode(); // same as AbstractMap.hashCode()
+            }
+            this.hash = h;
+        }
+
+        String shape() {
+            if (shape == null) {
+                final StringBuilder builder = new StringBuilder();
+                for (int i = 0; i < keys.length; i++) {
+                    builder.append(keys[i]).append('\u0000')
+                            .append(pairs[i].filterType.ordinal())
+                            .append('\u0000');
+                }
+                shape = builder.toString();
+            }
+            return shape;
+        }
+
+        Conditions with(String key, KeyValuePair<?> pair) {
+            final int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                final KeyValuePair<?>[] newPairs = pairs.clone();
+                newPairs[index] = pair;
+                return new Conditions(keys, newPairs);
+            }
+
+            final int insertion = -index - 1;
+            final String[] newKeys = new String[keys.length + 1];
+            final KeyValuePair<?>[] newPairs = new KeyValuePair<?>[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(pairs, 0, newPairs, 0, insertion);
+            newKeys[insertion] = key;
+            newPairs[insertion] = pair;
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(pairs, insertion, newPairs, insertion + 1, keys.length - insertion);
+            return new Conditions(newKeys, newPairs);
+        }
+
+        Conditions without(String key) {
+            final int index = Arrays.binarySearch(keys, key);
+            final String[] newKeys = new String[keys.length - 1];
+            final KeyValuePair<?>[] newPairs = new KeyValuePair<?>[keys.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(pairs, 0, newPairs, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(pairs, index + 1, newPairs, index, keys.length - index - 1);
+            return new Conditions(newKeys, newPairs);
+        }
+    }
+
+    /**
+     * Build a filter with many conditions without intermediate copies, the filter built is immutable
+     */
+    public static final class Builder {
+        private final TreeMap<String, KeyValuePair<?>> conditions = new TreeMap<>();
+
+        private Builder() {
+        }
+
+        public <T> Builder add(String key, T value) {
+            conditions.put(key, new KeyValuePair<>(FilterType.EQUAL, value));
+            return this;
+        }
+
+        public <T> Builder add(String key, FilterType type, T value) {
+            conditions.put(key, new KeyValuePair<>(type, value));
+            return this;
+        }
+
+        public <T> Builder anyOf(String key, Collection<T> values) {
+            conditions.put(key, KeyValuePair.of(FilterType.IN, values));
+            return this;
+        }
+
+        public <T> Builder noneOf(String key, Collection<T> values) {
+            conditions.put(key, KeyValuePair.of(FilterType.NOT_IN, values));
+            return this;
+        }
+
+        public Filter build() {
+            return new Filter(new Conditions(
+                    conditions.keySet().toArray(new String[conditions.size()]),
+                    conditions.values().toArray(new KeyValuePair<?>[conditions.size()])
+            ), true);
+        }
+    }
+
     /**
      * Immutable KeyValuePair class
+     * @note    The value of an IN or NOT_IN pair is an unmodifiable list of the values
      */
     public static class KeyValuePair<T> {
         public final FilterType filterType;
         public final T value;
+        private final int hash;
 
         KeyValuePair(FilterType ft, T v){
             value = v;
             filterType = ft;
+            this.hash = 31 * ft.hashCode() + valueHash(v, isMultiple(ft));
+        }
+
+        static <T> KeyValuePair<List<T>> of(FilterType ft, Collection<T> values) {
+            return new KeyValuePair<>(ft, Collections.unmodifiableList(new ArrayList<>(values)));
+        }
+
+        private static boolean isMultiple(FilterType ft) {
+            return ft == FilterType.IN || ft == FilterType.NOT_IN;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof KeyValuePair)) {
+                return false;
+            }
+            final KeyValuePair<?> other = (KeyValuePair<?>) o;
+            if (filterType != other.filterType || hash != other.hash) {
+                return false;
+            }
+            if (!isMultiple(filterType)) {
+                return ValueComparator.equal(value, other.value);
+            }
+
+            final List<?> values = (List<?>) value;
+            final List<?> otherValues = (List<?>) other.value;
+            if (values.size() != otherValues.size()) {
+                return false;
+            }
+            for (int i = 0; i < values.size(); i++) {
+                if (!ValueComparator.equal(values.get(i), otherValues.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return filterType + " " + value;
+        }
+
+        private static int valueHash(Object value, boolean multiple) {
+            if (!multiple) {
+                final Object normalized = ValueComparator.normalize(value);
+                return normalized == null ? 0 : normalized.hashCode();
+            }
+            int h = 1;
+            for (Object v : (List<?>) value) {
+                final Object normalized = ValueComparator.normalize(v);
+                h = 31 * h + (normalized == null ? 0 : normalized.hashCode());
+            }
+            return h;
         }
     }
 }
@@ -0,0 +1,122 @@
+package com.playmoweb.store2store.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A filter compiled into a predicate over the items of a class
+ * The field accessors of a filter shape (its keys and filter types) are resolved once per class then cached,
+ * so evaluating a row only reads the fields and compares the values.
+ *
+ * Usage :
+ *      FilterPredicate<MyModel> predicate = FilterPredicate.compile(MyModel.class, filter);
+ *      List<MyModel> matching = predicate.filter(items);
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class FilterPredicate<T> {
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Shape>> SHAPES = new ConcurrentHashMap<>();
+
+    private final Shape shape;
+    private final Filter.KeyValuePair<?>[] pairs;
+
+    private FilterPredicate(Shape shape, Filter.KeyValuePair<?>[] pairs) {
+        this.shape = shape;
+        this.pairs = pairs;
+    }
+
+    /**
+     * Compile a filter for a class
+     * @note    A null or empty filter matches everything
+     */
+    public static <T> FilterPredicate<T> compile(Class<T> clazz, Filter filter) {
+        if (filter != null) {
+            filter = filter.immutable(); // the conditions and their shape read at once
+        }
+        if (filter == null || filter.isEmpty()) {
+            return new FilterPredicate<>(Shape.EMPTY, new Filter.KeyValuePair<?>[0]);
+        }
+
+        // filters keep their conditions sorted by key, the shape does not depend on the insertion order
+        final Filter.KeyValuePair<?>[] pairs = new Filter.KeyValuePair<?>[filter.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = filter.pairAt(i);
+        }
+
+        ConcurrentHashMap<String, Shape> shapes = SHAPES.get(clazz);
+        if (shapes == null) {
+            final ConcurrentHashMap<String, Shape> created = new ConcurrentHashMap<>();
+            shapes = SHAPES.putIfAbsent(clazz, created);
+            if (shapes == null) {
+                shapes = created;
+            }
+        }
+
+        final String key = filter.shape();
+        Shape shape = shapes.get(key);
+        if (shape == null) {
+            final FieldAccessor[] accessors = new FieldAccessor[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                accessors[i] = FieldAccessor.of(clazz, filter.keyAt(i));
+            }
+            shape = new Shape(accessors);
+            shapes.put(key, shape);
+        }
+        return new FilterPredicate<>(shape, pairs);
+    }
+
+    /**
+     * @return  true if this predicate accepts every item
+     */
+    public boolean matchesAll() {
+        return pairs.length == 0;
+    }
+
+    /**
+     * Test an item against all the conditions of the filter
+     */
+    public boolean test(T item) {
+        final FieldAccessor[] accessors = shape.accessors;
+        for (int i = 0; i < accessors.length; i++) {
+            final Filter.KeyValuePair<?> pair = pairs[i];
+            final Object fieldValue = accessors[i].get(item);
+            if (!pair.filterType.test(fieldValue, pair.value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep the matching items, in the same order
+     */
+    public List<T> filter(Collection<T> items) {
+        final List<T> output = new ArrayList<>(items.size());
+        if (matchesAll()) {
+            output.addAll(items);
+            return output;
+        }
+        for (T item : items) {
+            if (test(item)) {
+                output.add(item);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Resolved accessors of a filter shape
+     */
+    private static final class Shape {
+        static final Shape EMPTY = new Shape(new FieldAccessor[0]);
+
+        final FieldAccessor[] accessors;
+
+        Shape(FieldAccessor[] accessors) {
+            this.accessors = accessors;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.playmoweb.store2store.utils;
 
+import java.util.Collection;
+
 /**
  * Filter types available
  * @author  Thibaud Giovannetti
@@ -7,5 +9,51 @@ package com.playmoweb.store2store.utils;
  * @date    08/02/2017.
  */
 public enum FilterType {
-    EQUAL, NOT_EQUAL, GREATER_THAN, LESS_THAN, GREATER_THAN_OR_EQUAL, LESS_THAN_OR_EQUAL
+    EQUAL, NOT_EQUAL, GREATER_THAN, LESS_THAN, GREATER_THAN_OR_EQUAL, LESS_THAN_OR_EQUAL,
+
+    /**
+     * Equal to any of the values of a collection
+     */
+    IN,
+
+    /**
+     * Equal to none of the values of a collection
+     */
+    NOT_IN;
+
+    /**
+     * Test a field value against the value of a filter
+     * @note    Values are compared with the {@link ValueComparator}
+     */
+    public boolean test(Object fieldValue, Object filterValue) {
+        switch (this) {
+            case EQUAL:
+                return ValueComparator.equal(fieldValue, filterValue);
+            case NOT_EQUAL:
+                return !ValueComparator.equal(fieldValue, filterValue);
+            case GREATER_THAN:
+                return ValueComparator.INSTANCE.compare(fieldValue, filterValue) > 0;
+            case LESS_THAN:
+                return ValueComparator.INSTANCE.compare(fieldValue, filterValue) < 0;
+            case GREATER_THAN_OR_EQUAL:
+                return ValueComparator.INSTANCE.compare(fieldValue, filterValue) >= 0;
+            case LESS_THAN_OR_EQUAL:
+                return ValueComparator.INSTANCE.compare(fieldValue, filterValue) <= 0;
+            case IN:
+                return contains((Collection<?>) filterValue, fieldValue);
+            case NOT_IN:
+                return !contains((Collection<?>) filterValue, fieldValue);
+            default:
+                throw new IllegalStateException("Unknown filter type " + this);
+        }
+    }
+
+    private static boolean contains(Collection<?> values, Object fieldValue) {
+        for (Object value : values) {
+            if (ValueComparator.equal(fieldValue, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,13 @@
+package com.playmoweb.store2store.utils;
+
+/**
+ * Secondary index types available
+ * - HASH answers EQUAL and NOT_EQUAL filters
+ * - SORTED answers all filter types and can be walked in order to avoid a sort
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public enum IndexType {
+    HASH, SORTED
+}
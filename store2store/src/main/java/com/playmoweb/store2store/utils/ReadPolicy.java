@@ -0,0 +1,14 @@
+package com.playmoweb.store2store.utils;
+
+/**
+ * Read policies of a Store synced with faster stores
+ * - EMIT_ALL emits the result of each store, from the fastest to the slowest one
+ * - FIRST_HIT stops at the first store having the requested items (getById, getByIds, getOne(item)) and only reads
+ *   the slower stores on a miss, the other reads behave like EMIT_ALL
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public enum ReadPolicy {
+    EMIT_ALL, FIRST_HIT
+}
@@ -2,7 +2,9 @@ package com.playmoweb.store2store.utils;
 
 
 import java.util.AbstractMap;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Bind a key to a sorting mode
@@ -14,6 +16,15 @@ public final class SortingMode {
     public static final SortingMode DEFAULT = new SortingMode("id", SortType.ASCENDING);
     public final LinkedList<AbstractMap.SimpleEntry<String, SortType>> entries = new LinkedList<>();
 
+    /**
+     * Compiled comparators by class and sorting rules
+     */
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<SortingMode, Comparator<?>>> COMPARATORS = new ConcurrentHashMap<>();
+    private static final int MAX_COMPARATORS_PER_CLASS = 256;
+
+    private SortingMode() {
+    }
+
     public SortingMode(String key, SortType sortType) {
         and(key, sortType);
     }
@@ -60,4 +71,87 @@ public final class SortingMode {
     public static SortingMode with(String key, SortType sortType){
         return new SortingMode(key, sortType);
     }
+
+    /**
+     * Get the comparator applying these rules to a class
+     * The comparator reads the fields with cached accessors and compares primitive fields without boxing when possible.
+     * It is compiled once per class and sorting rules then reused.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Comparator<T> comparator(Class<T> clazz) {
+        ConcurrentHashMap<SortingMode, Comparator<?>> comparators = COMPARATORS.get(clazz);
+        if (comparators == null) {
+            final ConcurrentHashMap<SortingMode, Comparator<?>> created = new ConcurrentHashMap<>();
+            comparators = COMPARATORS.putIfAbsent(clazz, created);
+            if (comparators == null) {
+                comparators = created;
+            }
+        }
+
+        Comparator<T> comparator = (Comparator<T>) comparators.get(this);
+        if (comparator == null) {
+            final SortingMode snapshot = copy(); // this instance can still be modified with and()
+            comparator = new CompiledComparator<>(clazz, snapshot);
+            if (comparators.size() >= MAX_COMPARATORS_PER_CLASS) {
+                comparators.clear();
+            }
+            comparators.put(snapshot, comparator);
+        }
+        return comparator;
+    }
+
+    /**
+     * Copy the sorting rules
+     */
+    public SortingMode copy() {
+        final SortingMode copy = new SortingMode();
+        for (AbstractMap.SimpleEntry<String, SortType> e : entries) {
+            copy.and(e.getKey(), e.getValue());
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof SortingMode && entries.equals(((SortingMode) o).entries));
+    }
+
+    @Override
+    public int hashCode() {
+        return entries.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SortingMode" + entries;
+    }
+
+    /**
+     * Chain of field comparators
+     */
+    private static final class CompiledComparator<T> implements Comparator<T> {
+        private final FieldComparator[] comparators;
+        private final boolean[] ascending;
+
+        CompiledComparator(Class<T> clazz, SortingMode sortingMode) {
+            comparators = new FieldComparator[sortingMode.entries.size()];
+            ascending = new boolean[comparators.length];
+            int i = 0;
+            for (AbstractMap.SimpleEntry<String, SortType> e : sortingMode.entries) {
+                comparators[i] = FieldComparator.of(FieldAccessor.of(clazz, e.getKey()));
+                ascending[i++] = e.getValue().getValue();
+            }
+        }
+
+        @Override
+        public int compare(T a, T b) {
+            for (int i = 0; i < comparators.length; i++) {
+                final int result = comparators[i].compare(a, b);
+                if (result != 0) {
+                    return ascending[i] ? result : -result;
+                }
+            }
+            return 0;
+        }
+    }
 }
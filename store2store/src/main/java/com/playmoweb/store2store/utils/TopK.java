@@ -0,0 +1,131 @@
+package com.playmoweb.store2store.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Single pass selection of the k first items of an ordering, in O(n log k)
+ * A bounded heap keeps the k best items seen so far, its root being the worst of them.
+ * Ties keep the order in which the items were offered, like a stable sort would.
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class TopK<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Comparator<? super T> comparator;
+    private final int k;
+
+    /**
+     * Heap of the selected items with their offer sequence (used to break ties)
+     */
+    private Object[] items;
+    private long[] sequences;
+    private int size = 0;
+    private long offered = 0;
+
+    public TopK(Comparator<? super T> comparator, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The number of items to select must be positive");
+        }
+        this.comparator = comparator;
+        this.k = k;
+        this.items = new Object[Math.min(k, INITIAL_CAPACITY)];
+        this.sequences = new long[items.length];
+    }
+
+    /**
+     * Offer an item to the selection
+     */
+    public void offer(T item) {
+        final long sequence = offered++;
+        if (size < k) {
+            if (size == items.length) {
+                final int capacity = (int) Math.min((long) k, items.length * 2L);
+                items = Arrays.copyOf(items, capacity);
+                sequences = Arrays.copyOf(sequences, capacity);
+            }
+            items[size] = item;
+            sequences[size] = sequence;
+            siftUp(size++);
+        } else if (compare(item, sequence, 0) < 0) {
+            // strictly before the worst selected item : it takes its place
+            items[0] = item;
+            sequences[0] = sequence;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Selected items from the first to the last
+     * @note    The selection is consumed by this call
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> toList() {
+        final Object[] sorted = new Object[size];
+        while (size > 0) {
+            // the root is the worst remaining item
+            sorted[size - 1] = items[0];
+            size--;
+            items[0] = items[size];
+            sequences[0] = sequences[size];
+            items[size] = null;
+            siftDown(0);
+        }
+
+        final List<T> output = new ArrayList<>(sorted.length);
+        for (Object item : sorted) {
+            output.add((T) item);
+        }
+        return output;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Object item, long sequence, int position) {
+        final int result = comparator.compare((T) item, (T) items[position]);
+        return result != 0 ? result : ValueComparator.compareLongs(sequence, sequences[position]);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (compare(items[position], sequences[position], parent) <= 0) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            final int left = 2 * position + 1;
+            if (left >= size) {
+                return;
+            }
+            final int right = left + 1;
+            final int worst = right < size && compare(items[right], sequences[right], left) > 0 ? right : left;
+            if (compare(items[worst], sequences[worst], position) <= 0) {
+                return;
+            }
+            swap(position, worst);
+            position = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        final Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        final long sequence = sequences[i];
+        sequences[i] = sequences[j];
+        sequences[j] = sequence;
+    }
+}
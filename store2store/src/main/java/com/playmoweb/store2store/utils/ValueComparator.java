@@ -0,0 +1,97 @@
+package com.playmoweb.store2store.utils;
+
+import java.util.Comparator;
+
+/**
+ * Total order over the values read from the fields of a model
+ * - null values come first
+ * - numbers are compared by value whatever their boxed type (an Integer 5 equals a Long 5)
+ * - values of unrelated types are ordered by class name to keep the order total
+ *
+ * @by      Playmoweb
+ * @date    18/10/2026
+ */
+public final class ValueComparator implements Comparator<Object> {
+    public static final ValueComparator INSTANCE = new ValueComparator();
+
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0d); // not equal to 0
+
+    private ValueComparator() {
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compare(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return compareNumbers((Number) a, (Number) b);
+        }
+        if (a instanceof Comparable && a.getClass().isInstance(b)) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        if (b instanceof Comparable && b.getClass().isInstance(a)) {
+            return -((Comparable<Object>) b).compareTo(a);
+        }
+        if (a.getClass() == b.getClass()) {
+            throw new IllegalArgumentException("Values of type " + a.getClass().getName() + " are not comparable");
+        }
+        return a.getClass().getName().compareTo(b.getClass().getName());
+    }
+
+    /**
+     * Equality consistent with this comparator, non comparable values fall back on equals()
+     */
+    public static boolean equal(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null) {
+            return false;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return compareNumbers((Number) a, (Number) b) == 0;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * Normalize a value to be used as a hash key consistent with {@link #equal(Object, Object)}
+     * Integral numbers become a Long, and so do the floating numbers with an integral value (1.0 equals 1).
+     */
+    public static Object normalize(Object value) {
+        if (isIntegral(value)) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Float || value instanceof Double) {
+            final double number = ((Number) value).doubleValue();
+            if (number == Math.rint(number) && Math.abs(number) < 0x1p63 && Double.doubleToRawLongBits(number) != NEGATIVE_ZERO) {
+                return (long) number;
+            }
+            return number;
+        }
+        return value;
+    }
+
+    public static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    private static int compareNumbers(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return compareLongs(a.longValue(), b.longValue());
+        }
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+}